@@ -0,0 +1,54 @@
+package syntaxfx;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
+import org.fxmisc.richtext.model.StyleSpans;
+import org.openjdk.jmh.annotations.*;
+
+import syntaxfx.bench.Corpus;
+import syntaxfx.bench.Rates;
+
+/**
+ * Builds the StyleSpans for a whole corpus the way a SyntaxArea highlighting pass does, without a
+ * CodeArea or the FX thread. It's in the syntaxfx package to reach TokenList.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Thread)
+public class HighlightingBenchmark {
+    @Param
+    Corpus.Language language;
+    @Param
+    Corpus.Size size;
+    @Param({"false", "true"})
+    boolean mergeSpans;
+
+    private String text;
+    private Lexer lexer;
+    private final TokenList tokens = new TokenList();
+    private final TokenList scratch = new TokenList();
+
+    @Setup
+    public void setUp() throws IOException {
+        text = Corpus.load(language, size);
+        lexer = language.createLexer();
+        tokens.lexRange(lexer, text, 0, text.length());
+    }
+
+    //Just the spans, from tokens lexed up front
+    @Benchmark
+    public StyleSpans<Collection<String>> computeHighlighting(Rates rates) {
+        rates.add(tokens.size, text.length());
+        return Highlighter.computeHighlighting(tokens, text, 0, text.length(), mergeSpans, StyleMapper.STYLE_CLASSES);
+    }
+
+    //Lexing and the spans together
+    @Benchmark
+    public StyleSpans<Collection<String>> lexAndHighlight(Rates rates) {
+        scratch.lexRange(lexer, text, 0, text.length());
+        rates.add(scratch.size, text.length());
+        return Highlighter.computeHighlighting(scratch, text, 0, text.length(), mergeSpans, StyleMapper.STYLE_CLASSES);
+    }
+}
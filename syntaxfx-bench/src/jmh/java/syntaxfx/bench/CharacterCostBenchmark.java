@@ -0,0 +1,48 @@
+package syntaxfx.bench;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import syntaxfx.Lexer;
+import syntaxfx.TokenSink;
+
+/**
+ * Reports the average time the lexers spend on each character, which is mostly the cost of
+ * stepping the DFA, by lexing a fixed number of characters of the large corpus.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@OperationsPerInvocation(CharacterCostBenchmark.LENGTH)
+@State(Scope.Thread)
+public class CharacterCostBenchmark implements TokenSink {
+    static final int LENGTH = 1 << 20;
+
+    @Param
+    Corpus.Language language;
+
+    private String text;
+    private Lexer lexer;
+    private int checksum;
+
+    @Setup
+    public void setUp() throws IOException {
+        text = Corpus.load(language, Corpus.Size.LARGE).substring(0, LENGTH);
+        lexer = language.createLexer();
+    }
+
+    @Benchmark
+    public int lex() {
+        checksum = 0;
+        lexer.setString(text);
+        while (lexer.nextToken(this))
+            ;
+        return checksum;
+    }
+
+    @Override
+    public void accept(int tokenType, int start, int end) {
+        checksum += tokenType ^ end;
+    }
+}
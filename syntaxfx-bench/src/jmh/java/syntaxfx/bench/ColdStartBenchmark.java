@@ -0,0 +1,60 @@
+package syntaxfx.bench;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import syntaxfx.Lexer;
+
+/**
+ * Times creating a lexer in a class loader that hasn't loaded it before and lexing the small
+ * corpus, which includes loading the lexer's classes and decoding its tables. Each measurement
+ * gets a new class loader. Run with several forks, since only the first measurement in a fork
+ * also pays for the JVM's own warm up.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 20)
+@State(Scope.Thread)
+public class ColdStartBenchmark {
+    @Param
+    Corpus.Language language;
+
+    private String text;
+    private String lexerClassName;
+    private URLClassLoader loader;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        text = Corpus.load(language, Corpus.Size.SMALL);
+        lexerClassName = language.createLexer().getClass().getName();
+    }
+
+    @Setup(Level.Invocation)
+    public void createLoader() {
+        URL classes = Lexer.class.getProtectionDomain().getCodeSource().getLocation();
+        loader = new URLClassLoader(new URL[] { classes }, ClassLoader.getPlatformClassLoader());
+    }
+
+    @TearDown(Level.Invocation)
+    public void closeLoader() throws IOException {
+        loader.close();
+    }
+
+    @Benchmark
+    public int createAndLex() throws ReflectiveOperationException {
+        Class<?> lexerClass = loader.loadClass(lexerClassName);
+        Object lexer = lexerClass.getConstructor().newInstance();
+        lexerClass.getMethod("setString", String.class).invoke(lexer, text);
+        Method getNextToken = lexerClass.getMethod("getNextToken");
+        int count = 0;
+        while (getNextToken.invoke(lexer) != null)
+            ++count;
+        return count;
+    }
+}
@@ -0,0 +1,69 @@
+package syntaxfx.bench;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+
+import syntaxfx.Lexer;
+import syntaxfx.LexerSpec;
+import syntaxfx.lexers.*;
+
+/**
+ * The text the benchmarks lex: one of the demo's sample files, repeated until it's the given size.
+ */
+public final class Corpus {
+    public enum Language {
+        JAVA("Demo.java", JavaLexer.SPEC),
+        C("Demo.c", CLexer.SPEC),
+        CPP("Demo.cpp", CppLexer.SPEC),
+        PYTHON("Demo.py", PythonLexer.SPEC);
+
+        final String sample;
+        final LexerSpec spec;
+
+        Language(String sample, LexerSpec spec) {
+            this.sample = sample;
+            this.spec = spec;
+        }
+
+        public Lexer createLexer() {
+            return spec.createLexer();
+        }
+    }
+
+    public enum Size {
+        //The sample file on its own
+        SMALL(0),
+        MEDIUM(64 * 1024),
+        LARGE(4 * 1024 * 1024);
+
+        final int length;
+
+        Size(int length) {
+            this.length = length;
+        }
+    }
+
+    private Corpus() {}
+
+    public static String load(Language language, Size size) throws IOException {
+        String sample = readSample(language.sample);
+        StringBuilder text = new StringBuilder(Math.max(size.length, sample.length()) + sample.length());
+        do {
+            text.append(sample).append('\n');
+        } while (text.length() < size.length);
+        return text.toString();
+    }
+
+    private static String readSample(String name) throws IOException {
+        try (InputStream in = Corpus.class.getResourceAsStream("/syntaxfx/demo/" + name)) {
+            if (in == null)
+                throw new FileNotFoundException(name);
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) > 0)
+                out.write(buffer, 0, read);
+            return new String(out.toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+}
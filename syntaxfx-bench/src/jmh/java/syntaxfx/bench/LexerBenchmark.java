@@ -0,0 +1,65 @@
+package syntaxfx.bench;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import syntaxfx.Lexer;
+import syntaxfx.Token;
+import syntaxfx.TokenSink;
+
+/**
+ * Lexes a whole corpus, through both the Token-allocating and the TokenSink paths.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Thread)
+public class LexerBenchmark implements TokenSink {
+    @Param
+    Corpus.Language language;
+    @Param
+    Corpus.Size size;
+
+    private String text;
+    private Lexer lexer;
+    private int tokenCount;
+    private int checksum;
+
+    @Setup
+    public void setUp() throws IOException {
+        text = Corpus.load(language, size);
+        lexer = language.createLexer();
+    }
+
+    @Benchmark
+    public int getNextToken(Rates rates) {
+        int count = 0;
+        int sum = 0;
+        lexer.setString(text);
+        Token token;
+        while ((token = lexer.getNextToken()) != null) {
+            ++count;
+            sum += token.getTokenType() ^ token.getEnd();
+        }
+        rates.add(count, text.length());
+        return sum;
+    }
+
+    @Benchmark
+    public int nextToken(Rates rates) {
+        tokenCount = 0;
+        checksum = 0;
+        lexer.setString(text);
+        while (lexer.nextToken(this))
+            ;
+        rates.add(tokenCount, text.length());
+        return checksum;
+    }
+
+    @Override
+    public void accept(int tokenType, int start, int end) {
+        ++tokenCount;
+        checksum += tokenType ^ end;
+    }
+}
@@ -0,0 +1,25 @@
+package syntaxfx.bench;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Counts the tokens and text a benchmark gets through, which JMH reports per second alongside
+ * the benchmark's own score. The corpora are ASCII, so megabytes are counted as a million chars.
+ */
+@AuxCounters(AuxCounters.Type.OPERATIONS)
+@State(Scope.Thread)
+public class Rates {
+    public long tokens;
+    public double megabytes;
+
+    @Setup(Level.Iteration)
+    public void reset() {
+        tokens = 0;
+        megabytes = 0;
+    }
+
+    public void add(int tokenCount, int length) {
+        tokens += tokenCount;
+        megabytes += length / 1e6;
+    }
+}
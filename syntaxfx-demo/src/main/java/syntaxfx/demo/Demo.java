@@ -20,7 +20,7 @@ import javafx.stage.Stage;
 import org.fxmisc.flowless.VirtualizedScrollPane;
 
 import syntaxfx.SyntaxArea;
-import syntaxfx.Lexer;
+import syntaxfx.LexerSpec;
 
 import syntaxfx.lexers.*;
 
@@ -90,13 +90,13 @@ public class Demo extends Application {
     }
 
     public void setLanguage(String language) {
-        Lexer lexer = null;
+        LexerSpec lexer = null;
         //Iterator<String> lines = null;
         Stream<String> lines = null;
         switch (language) {
 
             case "C":
-                lexer = new CLexer();
+                lexer = CLexer.SPEC;
                 try {
                     lines = Files.lines(Paths.get(Demo.class.getResource("/syntaxfx/demo/Demo.c").toURI()));
                 } catch (IOException | URISyntaxException ex) {
@@ -104,7 +104,7 @@ public class Demo extends Application {
                 }
                 break;
             case "C++":
-                lexer = new CppLexer();
+                lexer = CppLexer.SPEC;
                 try {
                     lines = Files.lines(Paths.get(Demo.class.getResource("/syntaxfx/demo/Demo.cpp").toURI()));
                 } catch (IOException | URISyntaxException ex) {
@@ -112,7 +112,7 @@ public class Demo extends Application {
                 }
                 break;
              case "JAVA":
-                lexer = new JavaLexer();
+                lexer = JavaLexer.SPEC;
                 try {
                     lines = Files.lines(Paths.get(Demo.class.getResource("/syntaxfx/demo/Demo.java").toURI()));
                 } catch (IOException | URISyntaxException ex) {
@@ -120,7 +120,7 @@ public class Demo extends Application {
                 }
                 break;
             case "PYTHON":
-                lexer = new PythonLexer();
+                lexer = PythonLexer.SPEC;
                 try {
                     lines = Files.lines(Paths.get(Demo.class.getResource("/syntaxfx/demo/Demo.py").toURI()));
                 } catch (IOException | URISyntaxException ex) {
@@ -136,7 +136,7 @@ public class Demo extends Application {
             lines.forEachOrdered(line -> sb.append(line + "\n"));
             if (area != null) {
                 area.replaceText(sb.toString());
-                area.setLexer(lexer);
+                area.setLexerSpec(lexer);
             }
         }
 
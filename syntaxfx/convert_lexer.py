@@ -0,0 +1,105 @@
+#!/usr/bin/env python3
+"""Rewrites the LEX-MAIN section AnnoFlex generates into the form DfaLexer runs.
+
+AnnoFlex writes a standalone lexer: its own tables, scan loop and getNextToken(). The lexers
+in syntaxfx.lexers instead hand their tables to LexerTables.decode() and their actions to
+DfaLexer through action(int). This keeps the generated tables and the action numbering and
+replaces everything else, so gen_lexers.sh runs it after AnnoFlex on every lexer.
+
+Sections already in DfaLexer form are left alone, so running it twice does nothing.
+"""
+
+import re
+import sys
+
+START = "    //%%LEX-MAIN-START%%\n"
+END = "    //%%LEX-MAIN-END%%"
+
+
+def table_data(section, name, create):
+    match = re.search(r"private static final \S+ " + name + r" = " + create + r"\(\n(.*?)\);\n",
+                      section, re.S)
+    if match is None:
+        raise ValueError("no " + name + " in the generated section")
+    return match.group(1)
+
+
+def action_names(names):
+    lines = []
+    line = "   "
+    for i, name in enumerate(names):
+        item = ' "' + name + '"' + ("," if i < len(names) - 1 else "")
+        if len(line) + len(item) > 100:
+            lines.append(line)
+            line = "   "
+        line += item
+    lines.append(line)
+    return "\n".join(lines)
+
+
+def convert(section):
+    character_map = table_data(section, "CHARACTER_MAP", "createCharacterMap")
+    transition_table = table_data(section, "TRANSITION_TABLE", "createTransitionTable")
+    action_map = table_data(section, "ACTION_MAP", "createActionMap")
+    table_size = re.search(r"new (?:short|byte)\[(\d+)\]\[(\d+)\]", section)
+    state_count, class_count = table_size.groups()
+
+    states = re.findall(r"private static final int (LEXICAL_STATE_\w+) = (\d+);", section)
+    start_states = dict(re.findall(r"case (LEXICAL_STATE_\w+): startState = (\d+);", section))
+    starts = [start_states[name] for name, value in sorted(states, key=lambda s: int(s[1]))]
+
+    actions = []
+    for number, returned, method in re.findall(
+            r"case (\d+): (return )?(\w+)\(\);(?: continue;)?", section):
+        if returned:
+            actions.append("        case %s: return %s();" % (number, method))
+        else:
+            actions.append("        case %s: %s(); return NO_TOKEN;" % (number, method))
+    names = [method for number, returned, method in sorted(
+        re.findall(r"case (\d+): (return )?(\w+)\(\);", section), key=lambda a: int(a[0]))]
+
+    return (START +
+            "    \n"
+            "    private static final String CHARACTER_MAP_DATA =\n" + character_map + ";\n"
+            "    \n"
+            "    private static final String TRANSITION_TABLE_DATA =\n" + transition_table + ";\n"
+            "    \n"
+            "    private static final String ACTION_MAP_DATA =\n" + action_map + ";\n"
+            "    \n"
+            "    private static final String[] ACTION_NAMES = {\n" + action_names(names) + "\n"
+            "    };\n"
+            "    \n" +
+            "".join("    private static final int %s = %s;\n" % state for state in states) +
+            "    \n"
+            "    //Decoded when the first lexer is created rather than when the class is loaded\n"
+            "    private static final class Tables {\n"
+            "        static final LexerTables TABLES = LexerTables.decode(%s, %s, new int[] { %s },\n"
+            "                CHARACTER_MAP_DATA, TRANSITION_TABLE_DATA, ACTION_MAP_DATA, ACTION_NAMES);\n"
+            "    }\n"
+            "    \n"
+            "    protected int action(int action) {\n"
+            "        switch(action) {\n" % (state_count, class_count, ", ".join(starts)) +
+            "\n".join(actions) + "\n"
+            "        }\n"
+            "        \n"
+            "        throw new IllegalArgumentException(\"invalid action\");\n"
+            "    }\n"
+            "    \n")
+
+
+def main(paths):
+    for path in paths:
+        with open(path) as file:
+            text = file.read()
+        start = text.index(START)
+        end = text.index(END, start)
+        section = text[start:end]
+        if "protected int action(int action)" in section:
+            continue
+        text = text[:start] + convert(section) + text[end:]
+        with open(path, "w") as file:
+            file.write(text)
+
+
+if __name__ == "__main__":
+    main(sys.argv[1:])
@@ -1,5 +1,6 @@
 #!/bin/bash
 
+#AnnoFlex generates standalone lexers, which convert_lexer.py then rewrites to run on DfaLexer
 for filename in ./src/main/java/syntaxfx/lexers/*; do
-    annoflex $filename
+    annoflex $filename && python3 ./convert_lexer.py $filename
 done
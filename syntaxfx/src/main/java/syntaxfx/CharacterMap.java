@@ -0,0 +1,116 @@
+package syntaxfx;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Maps chars to the character classes of a generated lexer's DFA. ASCII has a table of its own,
+ * and the rest of the BMP is split into blocks, with blocks that map to the same classes sharing
+ * the same part of one array. Most blocks are the same, so this takes a few KB rather than 64.
+ */
+final class CharacterMap {
+    private static final int BLOCK_BITS = 8;
+    private static final int BLOCK_SIZE = 1 << BLOCK_BITS;
+    private static final int BLOCK_MASK = BLOCK_SIZE - 1;
+
+    private final byte[] ascii;
+    //Where each block's classes start in blocks
+    private final int[] blockOffsets;
+    private final byte[] blocks;
+
+    private CharacterMap(byte[] ascii, int[] blockOffsets, byte[] blocks) {
+        this.ascii = ascii;
+        this.blockOffsets = blockOffsets;
+        this.blocks = blocks;
+    }
+
+    int classOf(char c) {
+        if (c < 128)
+            return ascii[c];
+        return blocks[blockOffsets[c >>> BLOCK_BITS] + (c & BLOCK_MASK)];
+    }
+
+    //The number of distinct blocks kept, ASCII's among them
+    int distinctBlocks() {
+        return blocks.length / BLOCK_SIZE;
+    }
+
+    /**
+     * Decodes a character map in the run-length encoded form the lexer generator writes: each
+     * class followed by how many chars in a row map to it.
+     */
+    static CharacterMap decode(String characterMapData) {
+        Builder builder = new Builder();
+        int length = characterMapData.length();
+        int i = 0;
+        while (i < length) {
+            byte curValue = (byte)characterMapData.charAt(i++);
+            builder.add(curValue, characterMapData.charAt(i++));
+        }
+        return builder.build();
+    }
+
+    //Splits runs of classes into blocks as they're decoded, without expanding the whole BMP first.
+    //Blocks that are a single class, which most are, are never expanded at all.
+    private static class Builder {
+        final int[] blockOffsets = new int[65536 / BLOCK_SIZE];
+        int blockCount = 0;
+        byte[] blocks = new byte[16 * BLOCK_SIZE];
+        int blocksLength = 0;
+        final Map<ByteBuffer, Integer> distinct = new HashMap<>();
+        //Where the block that's all of a given class is, if there is one
+        final Map<Byte, Integer> uniform = new HashMap<>();
+        //The block being filled
+        final byte[] block = new byte[BLOCK_SIZE];
+        int blockFill = 0;
+
+        void add(byte characterClass, int count) {
+            while (count > 0) {
+                if (blockFill == 0 && count >= BLOCK_SIZE) {
+                    blockOffsets[blockCount++] = uniformBlock(characterClass);
+                    count -= BLOCK_SIZE;
+                    continue;
+                }
+                int n = Math.min(count, BLOCK_SIZE - blockFill);
+                Arrays.fill(block, blockFill, blockFill + n, characterClass);
+                blockFill += n;
+                count -= n;
+                if (blockFill == BLOCK_SIZE) {
+                    blockOffsets[blockCount++] = distinctBlock(block);
+                    blockFill = 0;
+                }
+            }
+        }
+
+        int uniformBlock(byte characterClass) {
+            Integer offset = uniform.get(characterClass);
+            if (offset == null) {
+                Arrays.fill(block, characterClass);
+                offset = distinctBlock(block);
+                uniform.put(characterClass, offset);
+            }
+            return offset;
+        }
+
+        int distinctBlock(byte[] classes) {
+            Integer offset = distinct.get(ByteBuffer.wrap(classes));
+            if (offset != null)
+                return offset;
+            if (blocksLength == blocks.length)
+                blocks = Arrays.copyOf(blocks, blocks.length * 2);
+            System.arraycopy(classes, 0, blocks, blocksLength, BLOCK_SIZE);
+            offset = blocksLength;
+            blocksLength += BLOCK_SIZE;
+            distinct.put(ByteBuffer.wrap(blocks, offset, BLOCK_SIZE).slice(), offset);
+            return offset;
+        }
+
+        CharacterMap build() {
+            byte[] compact = Arrays.copyOf(blocks, blocksLength);
+            byte[] ascii = Arrays.copyOfRange(compact, blockOffsets[0], blockOffsets[0] + 128);
+            return new CharacterMap(ascii, blockOffsets, compact);
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package syntaxfx;
+
+/**
+ * A range of text affected by a series of edits: [start, end) in the text after the edits, and
+ * how much the edits changed the length of the text. start is -1 when nothing was changed.
+ */
+class Damage {
+    int start = -1;
+    int end = 0;
+    int delta = 0;
+
+    boolean isEmpty() {
+        return start < 0;
+    }
+
+    void clear() {
+        start = -1;
+        end = 0;
+        delta = 0;
+    }
+
+    /**
+     * Adds an edit that replaced [position, removalEnd) with text ending at insertionEnd.
+     */
+    void add(int position, int removalEnd, int insertionEnd) {
+        int netLength = insertionEnd - removalEnd;
+        if (start < 0) {
+            start = position;
+            end = insertionEnd;
+            delta = netLength;
+            return;
+        }
+        //Move the end of the range to where it is after this edit
+        if (end >= removalEnd)
+            end += netLength;
+        else if (end > position)
+            end = insertionEnd;
+        start = Math.min(start, position);
+        end = Math.max(end, insertionEnd);
+        delta += netLength;
+    }
+
+    /**
+     * Adds a series of edits made after the ones already in this range.
+     */
+    void add(Damage later) {
+        if (!later.isEmpty())
+            add(later.start, later.end - later.delta, later.end);
+    }
+
+    /**
+     * Removes the part of the range before offset.
+     */
+    void removeBefore(int offset) {
+        if (offset >= end)
+            clear();
+        else if (offset > start)
+            start = offset;
+    }
+
+    /**
+     * Widens the range to include [from, to), without treating it as an edit.
+     */
+    void include(int from, int to) {
+        if (start < 0) {
+            start = from;
+            end = to;
+            return;
+        }
+        start = Math.min(start, from);
+        end = Math.max(end, to);
+    }
+
+}
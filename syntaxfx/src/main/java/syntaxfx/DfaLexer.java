@@ -0,0 +1,239 @@
+package syntaxfx;
+
+import java.util.Arrays;
+
+/**
+ * The runtime shared by the generated lexers. It finds the longest match for the DFA in a
+ * language's LexerTables and passes the action of the state it ends in to action(), which is all
+ * a language has to implement besides the actions themselves.
+ */
+public abstract class DfaLexer extends Lexer {
+    /**
+     * Returned by action() when an action doesn't produce a token, so scanning should go on.
+     */
+    protected static final int NO_TOKEN = -2;
+
+    private final LexerTables tables;
+    private final int initialState;
+    private final LexerState initialSnapshot;
+
+    protected CharSequence string = "";
+    protected int regionEnd;
+    protected int dot;
+    protected int matchStart;
+    protected int matchEnd;
+    //Where the text of the innermost lexical state entered starts
+    protected int stateStart = 0;
+    //Just past the last character looked at for the token being scanned
+    protected int scanEnd = 0;
+
+    private int startState;
+    //The lexical states entered and not yet left, bottom first
+    private int[] stateStack = new int[4];
+    private int depth = 0;
+    //Where the last token found by an action starts and ends
+    private int tokenStart = 0;
+    private int tokenEnd = 0;
+    //The last snapshot saveState() took inside a comment
+    private LexerState savedState;
+    //Counts what each match does, when profiling
+    private LexerProfile profile = null;
+
+    protected DfaLexer(LexerTables tables, int initialState) {
+        this.tables = tables;
+        this.initialState = initialState;
+        initialSnapshot = new LexerState(new int[] { initialState }, 0);
+        savedState = initialSnapshot;
+        setLexicalState(initialState);
+    }
+
+    /**
+     * Performs the given action for the text just matched, returning the type of the token it
+     * found or NO_TOKEN.
+     */
+    protected abstract int action(int action);
+
+    public void setString(String string) {
+        setText(string, 0, string.length(), null);
+    }
+
+    public void setString(String string, int offset, LexerState state) {
+        setText(string, offset, string.length(), state);
+    }
+
+    public void setText(CharSequence text, int start, int end, LexerState state) {
+        string = text != null ? text : "";
+        dot = start;
+        regionEnd = end;
+        matchStart = start;
+        matchEnd = start;
+        depth = 0;
+        if (state == null) {
+            pushState(initialState);
+            stateStart = 0;
+        } else {
+            for (int i = 0; i < state.getDepth(); ++i)
+                pushState(state.getState(i));
+            stateStart = start - state.getTokenOffset();
+        }
+        setLexicalState(stateStack[depth - 1]);
+    }
+
+    public LexerState saveState() {
+        //Outside of comments there's nothing to remember, so share one snapshot
+        if (depth == 1)
+            return initialSnapshot;
+        //Comments rarely change the state between tokens, so reuse the last snapshot if it matches
+        int tokenOffset = dot - stateStart;
+        if (savedState.getDepth() == depth && savedState.getTokenOffset() == tokenOffset) {
+            int i = 0;
+            while (i < depth && savedState.getState(i) == stateStack[i])
+                ++i;
+            if (i == depth)
+                return savedState;
+        }
+        savedState = new LexerState(stateStack, depth, tokenOffset);
+        return savedState;
+    }
+
+    public int getPosition() {
+        return dot;
+    }
+
+    public int getScanEnd() {
+        return scanEnd;
+    }
+
+    public Token getNextToken() {
+        int tokenType = scanToken();
+        return tokenType < 0 ? null : new Token(tokenType, tokenStart, tokenEnd);
+    }
+
+    public boolean nextToken(TokenSink sink) {
+        int tokenType = scanToken();
+        if (tokenType < 0)
+            return false;
+        sink.accept(tokenType, tokenStart, tokenEnd);
+        return true;
+    }
+
+    /**
+     * Records where the token an action found starts and ends, and returns its type.
+     */
+    protected int token(int tokenType, int start, int end) {
+        tokenStart = start;
+        tokenEnd = end;
+        return tokenType;
+    }
+
+    protected void enterLexicalState(int state) {
+        setLexicalState(state);
+        pushState(state);
+    }
+
+    protected void leaveLexicalState() {
+        --depth;
+        setLexicalState(stateStack[depth - 1]);
+    }
+
+    private void pushState(int state) {
+        if (depth == stateStack.length)
+            stateStack = Arrays.copyOf(stateStack, depth * 2);
+        stateStack[depth++] = state;
+    }
+
+    /**
+     * Moves dot past the text of a comment or string, up to the next occurrence of terminator,
+     * so the DFA only has to match the terminator rather than every character before it.
+     */
+    protected void skipTo(String terminator) {
+        skipTo(terminator, -1);
+    }
+
+    /**
+     * Like skipTo(terminator), but also stops at the char stop.
+     */
+    protected void skipTo(String terminator, int stop) {
+        char first = terminator.charAt(0);
+        int next = dot;
+        while (next < regionEnd) {
+            char c = string.charAt(next);
+            if (c == stop || c == first && matchesAt(next, terminator))
+                break;
+            ++next;
+        }
+        scanEnd = Math.max(scanEnd, next + terminator.length());
+        dot = next;
+    }
+
+    private boolean matchesAt(int offset, String s) {
+        if (offset + s.length() > regionEnd)
+            return false;
+        for (int i = 1; i < s.length(); ++i)
+            if (string.charAt(offset + i) != s.charAt(i))
+                return false;
+        return true;
+    }
+
+    void setProfile(LexerProfile profile) {
+        profile.bind(tables);
+        this.profile = profile;
+    }
+
+    private void setLexicalState(int lexicalState) {
+        startState = tables.startState(lexicalState);
+    }
+
+    //Returns the type of the next token, or -1 at the end of the text
+    private int scanToken() {
+        scanEnd = dot;
+        CharSequence string = this.string;
+        int regionEnd = this.regionEnd;
+        CharacterMap characterMap = tables.characterMap;
+        int[] transitions = tables.transitions;
+
+        while (dot < regionEnd) {
+            //Find the longest match
+            int curState = startState;
+            int iterator = dot;
+            int matchAction = -1;
+            int matchPosition = 0;
+            do {
+                int entry = transitions[curState + characterMap.classOf(string.charAt(iterator))];
+                if (entry == LexerTables.NO_TRANSITION)
+                    break;
+                curState = entry & LexerTables.STATE_MASK;
+                if (entry > LexerTables.STATE_MASK) {
+                    matchAction = (entry >>> LexerTables.ACTION_SHIFT) - 1;
+                    matchPosition = iterator;
+                }
+            } while (++iterator < regionEnd);
+
+            if (iterator >= scanEnd)
+                scanEnd = iterator + 1;
+
+            if (matchAction == -1) {
+                matchStart = dot;
+                matchEnd = dot;
+                throw new IllegalStateException("invalid input");
+            }
+
+            //Perform the action of the state the match ends in
+            int start = dot;
+            matchStart = dot;
+            matchEnd = matchPosition + 1;
+            dot = matchEnd;
+            int tokenType = action(matchAction);
+            //Every transition moves the iterator on a char, and it went on past the match
+            //looking for a longer one
+            if (profile != null)
+                profile.count(matchAction, iterator - start, iterator - (matchPosition + 1), dot - start, tokenType != NO_TOKEN);
+            if (tokenType != NO_TOKEN)
+                return tokenType;
+        }
+
+        matchStart = dot;
+        matchEnd = dot;
+        return -1;
+    }
+}
@@ -0,0 +1,116 @@
+package syntaxfx;
+
+import java.util.List;
+
+import org.fxmisc.richtext.model.Paragraph;
+import org.fxmisc.richtext.model.StyledDocument;
+import org.fxmisc.richtext.model.TwoDimensional.Bias;
+import org.fxmisc.richtext.model.TwoDimensional.Position;
+
+/**
+ * The text of a document, read a paragraph at a time instead of being copied into one string.
+ * Paragraphs are joined by '\n'. Lexers mostly read forward, so the paragraph last read from is
+ * remembered, along with where it starts.
+ *
+ * The document should be immutable, such as a snapshot. Not safe for use by several threads.
+ */
+class DocumentText implements CharSequence {
+
+    private final StyledDocument<?, ?, ?> document;
+    private final List<? extends Paragraph<?, ?, ?>> paragraphs;
+    private final int length;
+
+    //The paragraph last read from, its text and where it starts in the document
+    private int paragraph = 0;
+    private String paragraphText;
+    private int paragraphStart = 0;
+
+    DocumentText(StyledDocument<?, ?, ?> document) {
+        this.document = document;
+        this.paragraphs = document.getParagraphs();
+        this.length = document.length();
+        this.paragraphText = paragraphs.get(0).getText();
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        int offset = index - paragraphStart;
+        if (offset >= 0 && offset < paragraphText.length())
+            return paragraphText.charAt(offset);
+        return charAtBoundary(index);
+    }
+
+    //Handles offsets outside the current paragraph's text, kept apart so charAt() stays small
+    private char charAtBoundary(int index) {
+        //The last paragraph has no newline after it
+        if (index < 0 || index >= length)
+            throw new IndexOutOfBoundsException("index " + index + ", length " + length);
+        if (index - paragraphStart != paragraphText.length())
+            seek(index);
+        int offset = index - paragraphStart;
+        return offset == paragraphText.length() ? '\n' : paragraphText.charAt(offset);
+    }
+
+    //Moves to the paragraph holding the given offset (or the newline after it)
+    private void seek(int index) {
+        int next = paragraphStart + paragraphText.length() + 1;
+        if (index >= next) {
+            //Reading on into the next paragraph is the usual case
+            String nextText = paragraphs.get(paragraph + 1).getText();
+            if (index <= next + nextText.length()) {
+                ++paragraph;
+                paragraphStart = next;
+                paragraphText = nextText;
+                return;
+            }
+        }
+        Position position = document.offsetToPosition(index, Bias.Forward);
+        paragraph = position.getMajor();
+        paragraphStart = index - position.getMinor();
+        paragraphText = paragraphs.get(paragraph).getText();
+    }
+
+    //Copies a paragraph at a time, as lexers that can't read from a CharSequence are given a
+    //copy of the text up to where they stop
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        if (start < 0 || end > length || start > end)
+            throw new IndexOutOfBoundsException("start " + start + ", end " + end + ", length " + length);
+        StringBuilder builder = new StringBuilder(end - start);
+        int i = start;
+        while (i < end) {
+            int offset = i - paragraphStart;
+            if (offset < 0 || offset > paragraphText.length()) {
+                seek(i);
+                offset = i - paragraphStart;
+            }
+            int count = Math.min(end - i, paragraphText.length() - offset);
+            builder.append(paragraphText, offset, offset + count);
+            i += count;
+            if (i < end) {
+                builder.append('\n');
+                ++i;
+            }
+        }
+        return builder.toString();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder(length);
+        boolean first = true;
+        for (Paragraph<?, ?, ?> par : paragraphs) {
+            if (!first)
+                builder.append('\n');
+            builder.append(par.getText());
+            first = false;
+        }
+        return builder.toString();
+    }
+
+}
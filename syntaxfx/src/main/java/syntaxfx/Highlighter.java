@@ -0,0 +1,602 @@
+package syntaxfx;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+import org.fxmisc.richtext.GenericStyledArea;
+import org.fxmisc.richtext.model.PlainTextChange;
+import org.fxmisc.richtext.model.StyleSpans;
+import org.fxmisc.richtext.model.StyledDocument;
+
+import org.reactfx.Subscription;
+import org.reactfx.util.FxTimer;
+import org.reactfx.util.Timer;
+
+import javafx.application.Platform;
+
+import syntaxfx.lexers.JavaLexer;
+
+/**
+ * Keeps the syntax highlighting of an area up to date as its text changes. The areas only differ
+ * in the kind of style S they give text, which the StyleMapper maps each token type to.
+ */
+final class Highlighter<S> {
+
+    //How much text a pass lexes at a time when highlighting the visible paragraphs first
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    //The token type used for text that isn't part of any token, which is left unstyled
+    private static final int PLAIN = -1;
+
+    final GenericStyledArea<?, String, S> area;
+    Lexer lexer = new JavaLexer();
+    //When set, each pass lexes with a lexer of its own from the spec rather than sharing lexer
+    LexerSpec lexerSpec = JavaLexer.SPEC;
+    final Subscription subscription;
+    boolean incremental = true;
+    boolean viewportFirst = false;
+    volatile boolean mergeSpans = false;
+    volatile StyleMapper<S> styleMapper;
+    HighlightingPolicy policy = HighlightingPolicy.adaptive();
+    final HighlightingStatistics statistics = new HighlightingStatistics();
+
+    //The text changed since the last highlighting pass was started
+    Damage damage = new Damage();
+
+    //Background highlighting: the executor passes run on (null to run them on the FX thread),
+    //the last pass handed to it, and a counter bumped on every change so stale passes can tell
+    Executor executor = null;
+    CompletableFuture<Void> lastPass = CompletableFuture.completedFuture(null);
+    volatile int version = 0;
+    int appliedSerial = 0;
+
+    //When the next pass starts: the timer waiting for edits to stop and how long it waits, and
+    //whether a pass has been queued to run straight away
+    Timer timer = null;
+    Duration timerDelay = null;
+    boolean passQueued = false;
+    //How long the last pass took, and the share of each slice of a pass on the FX thread that
+    //goes on lexing, the rest going on building and applying styles
+    volatile long lastPassNanos = 0;
+    double lexShare = 0.5;
+
+    //The visible part of the document, which passes highlight ahead of the rest
+    volatile Viewport viewport = null;
+
+    //The fields below belong to the highlighting passes, which may run on the executor.
+    //The tokens and per-paragraph lexer checkpoints found by the last highlighting pass
+    TokenList tokens = new TokenList();
+    //Changes not yet lexed because a pass was cancelled or hasn't got to them yet, whether they
+    //need a full pass, and whether they need lexing from the start of the document
+    Damage unlexed = new Damage();
+    boolean relexAll = false;
+    boolean relexWhole = false;
+    //Text whose styles may not have been applied, and the number of the last result posted
+    final Restyle restyle = new Restyle();
+    int resultSerial = 0;
+    //The provisional tokens of the visible paragraphs, and the viewport they were lexed for
+    TokenList preview = new TokenList();
+    Viewport previewed = null;
+
+    Highlighter(GenericStyledArea<?, String, S> area, StyleMapper<S> styleMapper) {
+        this.area = area;
+        this.styleMapper = styleMapper;
+
+        //Keep track of what changed, so only the affected part of the document is re-lexed
+        Subscription changeTracker = area.plainTextChanges().subscribe(this::recordChange);
+
+        //Keep track of what's visible, so it can be highlighted first
+        Subscription viewportTracker = area.viewportDirtyEvents().subscribe(ignore -> {
+            if (viewportFirst)
+                updateViewport();
+        });
+
+        //Recompute the syntax highlighting repeatedly
+        subscription = area.multiPlainChanges()
+            .subscribe(ignore -> scheduleHighlight())
+            .and(changeTracker)
+            .and(viewportTracker)
+            .and(() -> {
+                if (timer != null)
+                    timer.stop();
+            });
+    }
+
+    void setLexer(Lexer lexer, LexerSpec lexerSpec) {
+        this.lexer = lexer;
+        this.lexerSpec = lexerSpec;
+        ++version;
+        //Recalculate the syntax highlighting
+        startPass(true);
+    }
+
+    void setViewportFirst(boolean viewportFirst) {
+        this.viewportFirst = viewportFirst;
+        if (viewportFirst)
+            updateViewport();
+        else
+            viewport = null;
+    }
+
+    void setSpanMerging(boolean mergeSpans) {
+        if (mergeSpans == this.mergeSpans)
+            return;
+        this.mergeSpans = mergeSpans;
+        //Whitespace is styled differently, so restyle the whole document
+        ++version;
+        startPass(true);
+    }
+
+    void setStyleMapper(StyleMapper<S> styleMapper) {
+        this.styleMapper = styleMapper;
+        ++version;
+        startPass(true);
+    }
+
+    private void recordChange(PlainTextChange change) {
+        damage.add(change.getPosition(), change.getRemovalEnd(), change.getInsertionEnd());
+        ++version;
+    }
+
+    //Highlights the edits made so far once the policy says to
+    private void scheduleHighlight() {
+        Duration delay = policy.delay(Duration.ofNanos(lastPassNanos));
+        if (delay.isZero() || delay.isNegative()) {
+            if (timer != null)
+                timer.stop();
+            if (!passQueued) {
+                passQueued = true;
+                Platform.runLater(() -> {
+                    passQueued = false;
+                    rehighlight();
+                });
+            }
+            return;
+        }
+        if (timer == null || !delay.equals(timerDelay)) {
+            if (timer != null)
+                timer.stop();
+            timer = FxTimer.create(delay, this::rehighlight);
+            timerDelay = delay;
+        }
+        timer.restart();
+    }
+
+    private void rehighlight() {
+        if (!damage.isEmpty())
+            startPass(false);
+    }
+
+    //Records which part of the document is visible, for passes to highlight first
+    private void updateViewport() {
+        int visible = area.getVisibleParagraphs().size();
+        if (visible == 0)
+            return;
+        //Right after an edit the visible paragraphs may not have caught up with the document
+        int last = area.getParagraphs().size() - 1;
+        int firstPar = Math.min(area.visibleParToAllParIndex(0), last);
+        int lastPar = Math.min(area.visibleParToAllParIndex(visible - 1), last);
+        int start = area.getAbsolutePosition(firstPar, 0);
+        int end = area.getAbsolutePosition(lastPar, area.getParagraphLength(lastPar));
+        Viewport current = viewport;
+        if (current == null || current.version != version || current.start != start || current.end != end)
+            viewport = new Viewport(version, start, end);
+    }
+
+    //Starts a highlighting pass over the changes made since the last one. A full pass restyles
+    //the whole document, which otherwise only has the styles that changed reapplied.
+    private void startPass(boolean full) {
+        if (executor == null && !lastPass.isDone()) {
+            //Rather than wait on the FX thread for a pass still running in the background, tell
+            //it to stop, and start this one once it has
+            ++version;
+            lastPass.handle((ignore, ex) -> null).thenRun(() -> Platform.runLater(() -> startPass(full)));
+            return;
+        }
+        boolean whole = !incremental;
+        Damage changes = damage;
+        damage = new Damage();
+        Lexer passLexer = lexerSpec != null ? lexerSpec.createLexer() : lexer;
+        int passVersion = version;
+        int applied = appliedSerial;
+        int chunkSize = viewportFirst ? CHUNK_SIZE : Integer.MAX_VALUE;
+        if (viewportFirst)
+            updateViewport();
+
+        //The snapshot is immutable, so the pass can read it on any thread
+        StyledDocument<?, String, S> snapshot = area.getContent().snapshot();
+        if (executor == null) {
+            HighlightingStatistics.Recorder passRecord = beginPass(changes, full, whole, passVersion, applied,
+                    snapshot.length());
+            if (passRecord != null)
+                continuePass(passLexer, passText(snapshot), passVersion, passRecord, chunkSize, 0);
+            else
+                statistics.skipped();
+        } else {
+            CompletableFuture<Void> pass = lastPass.handle((ignore, ex) -> (Void)null).thenRunAsync(() -> {
+                long passStart = System.nanoTime();
+                HighlightingStatistics.Recorder passRecord = beginPass(changes, full, whole, passVersion, applied,
+                        snapshot.length());
+                if (passRecord != null) {
+                    CharSequence text = passText(snapshot);
+                    while (runChunk(passLexer, text, passVersion, passRecord, chunkSize, TokenList.NO_DEADLINE,
+                            result -> Platform.runLater(() -> applyResult(result))))
+                        ;
+                    recordPassTime(System.nanoTime() - passStart, version != passVersion);
+                } else {
+                    Platform.runLater(statistics::skipped);
+                }
+            }, executor);
+            //The next pass carries on regardless, so report a failed pass before it's chained on
+            pass.whenComplete((ignore, ex) -> {
+                if (ex != null)
+                    rethrowOnFxThread(ex);
+            });
+            lastPass = pass;
+        }
+    }
+
+    //Throws the exception a background pass failed with on the FX thread, so it reaches the same
+    //uncaught exception handler as a pass run on the FX thread would
+    private static void rethrowOnFxThread(Throwable failure) {
+        Throwable cause = failure instanceof CompletionException && failure.getCause() != null
+                ? failure.getCause() : failure;
+        Platform.runLater(() -> {
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException)cause;
+            if (cause instanceof Error)
+                throw (Error)cause;
+            throw new CompletionException(cause);
+        });
+    }
+
+    //Returns the text for a pass to lex. Most passes only read a little of it, so it's read
+    //straight from the document's paragraphs. Passes that read most of it are quicker on a copy.
+    private CharSequence passText(StyledDocument<?, ?, ?> document) {
+        if (unlexed.end - unlexed.start > document.length() / 2)
+            return document.getText();
+        return new DocumentText(document);
+    }
+
+    //Runs the next slice of a pass on the FX thread, leaving the one after it until later so the
+    //FX thread can handle input and render in between. Lexing stops once it's used its share of
+    //the policy's budget, leaving the rest for applying the slice's styles. passNanos is how long
+    //the slices before it took.
+    private void continuePass(Lexer passLexer, CharSequence text, int passVersion,
+            HighlightingStatistics.Recorder passRecord, int chunkSize, long passNanos) {
+        long start = System.nanoTime();
+        Duration budget = policy.fxThreadBudget();
+        long deadline = budget == null ? TokenList.NO_DEADLINE : start + (long)(budget.toNanos() * lexShare);
+        long lexNanos = passRecord.lexNanos;
+        boolean more = runChunk(passLexer, text, passVersion, passRecord, chunkSize, deadline, this::applyResult);
+        long elapsed = System.nanoTime() - start;
+        //Slices that were cut short show how the time divides up. Lexing always gets some of it.
+        if (more && elapsed > 0)
+            lexShare = Math.max(0.1, (lexShare + (double)(passRecord.lexNanos - lexNanos) / elapsed) / 2);
+        if (more)
+            Platform.runLater(() -> continuePass(passLexer, text, passVersion, passRecord, chunkSize, passNanos + elapsed));
+        else
+            recordPassTime(passNanos + elapsed, version != passVersion);
+    }
+
+    //Records how long a pass took, for the policy to decide the next delay from. A superseded pass
+    //only counts if it took longer, so edits that keep cutting passes short still back off.
+    private void recordPassTime(long nanos, boolean superseded) {
+        lastPassNanos = superseded ? Math.max(lastPassNanos, nanos) : nanos;
+    }
+
+    //Adds the given changes to the work left by earlier passes. Returns the recorder for the pass's
+    //statistics, or null if the pass was abandoned.
+    private HighlightingStatistics.Recorder beginPass(Damage changes, boolean full, boolean whole, int passVersion, int applied, int length) {
+        //If the last result was applied, so was everything the last pass posted
+        restyle.begin(changes, applied == resultSerial);
+        unlexed.add(changes);
+        relexAll |= full;
+        relexWhole |= whole;
+
+        //The changes stay in unlexed for the next pass if this one is abandoned
+        if (version != passVersion)
+            return null;
+        HighlightingStatistics.Recorder passRecord = new HighlightingStatistics.Recorder();
+        passRecord.full = relexAll || relexWhole;
+        if (relexAll) {
+            tokens.clear();
+            unlexed.clear();
+            unlexed.add(0, 0, length);
+            restyle.clear();
+            relexAll = false;
+        }
+        return passRecord;
+    }
+
+    //Lexes the next piece of the changes and posts its styles. Returns whether there's more to do.
+    private boolean runChunk(Lexer passLexer, CharSequence text, int passVersion,
+            HighlightingStatistics.Recorder passRecord, int chunkSize, long deadline, Consumer<Result<S>> publish) {
+        BooleanSupplier superseded = () -> version != passVersion;
+        if (superseded.getAsBoolean()) {
+            publish.accept(new Result<S>(passVersion, -1, 0, null, passRecord, false));
+            return false;
+        }
+        previewViewport(passLexer, text, passVersion, passRecord, publish);
+        LexEvent event = new LexEvent();
+        event.begin();
+        long lexStart = System.nanoTime();
+        if (!tokens.relex(passLexer, text, unlexed, chunkSize, deadline, relexWhole, superseded)) {
+            publish.accept(new Result<S>(passVersion, -1, 0, null, passRecord, false));
+            return false;
+        }
+        passRecord.lexNanos += System.nanoTime() - lexStart;
+        passRecord.tokens += tokens.lexedTokens;
+        passRecord.charactersLexed += tokens.lexedEnd - tokens.lexedStart;
+        commitLexEvent(event, passLexer, text, tokens.lexedStart, tokens.lexedEnd, tokens.lexedTokens, false);
+        relexWhole = false;
+
+        boolean done = unlexed.isEmpty();
+        int[] range = restyle.next(tokens, text, done, mergeSpans);
+        if (range != null) {
+            int from = range[0];
+            int to = range[1];
+            publish.accept(new Result<S>(passVersion, ++resultSerial, from, buildSpans(tokens, text, from, to, passRecord), passRecord, done));
+        } else if (done) {
+            //There's nothing left to restyle, but the pass still has to be recorded
+            publish.accept(new Result<S>(passVersion, -1, 0, null, passRecord, true));
+        }
+        return !done;
+    }
+
+    //Lexes the visible paragraphs on their own if the pass won't reach them soon
+    private void previewViewport(Lexer passLexer, CharSequence text, int passVersion,
+            HighlightingStatistics.Recorder passRecord, Consumer<Result<S>> publish) {
+        Viewport view = viewport;
+        if (view == null || view == previewed || view.version != passVersion)
+            return;
+        previewed = view;
+        if (unlexed.isEmpty() || view.end <= unlexed.start + CHUNK_SIZE || view.start >= unlexed.end)
+            return;
+        //Lexers that can't be resumed lex the whole document in one piece anyway
+        if (passLexer.saveState() == null)
+            return;
+        int from = Math.max(view.start, unlexed.start);
+        int to = Math.min(view.end, unlexed.end);
+        LexEvent event = new LexEvent();
+        event.begin();
+        long lexStart = System.nanoTime();
+        preview.lexRange(passLexer, text, from, to);
+        passRecord.lexNanos += System.nanoTime() - lexStart;
+        passRecord.tokens += preview.size;
+        passRecord.charactersLexed += to - from;
+        commitLexEvent(event, passLexer, text, from, to, preview.size, true);
+        publish.accept(new Result<S>(passVersion, -1, from, buildSpans(preview, text, from, to, passRecord), passRecord, false));
+    }
+
+    //The event's fields are only filled in if Flight Recorder is recording it
+    private static void commitLexEvent(LexEvent event, Lexer lexer, CharSequence text, int start, int end,
+            int tokenCount, boolean provisional) {
+        if (!event.shouldCommit())
+            return;
+        event.lexer = lexer.getClass();
+        event.documentLength = text.length();
+        event.regionStart = start;
+        event.regionEnd = end;
+        event.tokenCount = tokenCount;
+        event.provisional = provisional;
+        event.commit();
+    }
+
+    private StyleSpans<S> buildSpans(TokenList list, CharSequence text, int from, int to,
+            HighlightingStatistics.Recorder passRecord) {
+        long buildStart = System.nanoTime();
+        StyleSpans<S> spans = computeHighlighting(list, text, from, to, mergeSpans, styleMapper);
+        passRecord.buildNanos += System.nanoTime() - buildStart;
+        passRecord.spans += spans.getSpanCount();
+        return spans;
+    }
+
+    private void applyResult(Result<S> result) {
+        //The styles are only valid for the text they were computed from
+        if (result.version != version) {
+            statistics.cancelled(result.record);
+            return;
+        }
+        //Provisional results don't count towards the pass's progress
+        if (result.serial >= 0)
+            appliedSerial = result.serial;
+        if (result.spans != null) {
+            StyleEvent event = new StyleEvent();
+            event.begin();
+            long applyStart = System.nanoTime();
+            area.setStyleSpans(result.start, result.spans);
+            result.record.applyNanos += System.nanoTime() - applyStart;
+            if (event.shouldCommit()) {
+                event.area = area.getClass();
+                event.documentLength = area.getLength();
+                event.regionStart = result.start;
+                event.regionEnd = result.start + result.spans.length();
+                event.spanCount = result.spans.getSpanCount();
+                event.commit();
+            }
+        }
+        if (result.last)
+            statistics.completed(result.record);
+    }
+
+    static <S> StyleSpans<S> computeHighlighting(TokenList list, CharSequence text, int start, int end,
+            boolean mergeWhitespace, StyleMapper<S> styleMapper) {
+        int lastTokenEnd = start;
+        int first = list.firstEndingAfter(start);
+        //There's rarely more than one span per token, so size the spans for that
+        SpanMerger<S> spans = new SpanMerger<S>(styleMapper, mergeWhitespace, list.firstEndingAfter(end) - first + 2);
+        //Whitespace at the start takes the style of the token before the range, as it would have
+        //if the range had started earlier
+        if (mergeWhitespace) {
+            int before = first - 1;
+            while (before >= 0 && list.types[before] == Token.OTHER && isWhitespace(text, list.starts[before], list.ends[before]))
+                --before;
+            if (before >= 0)
+                spans.carry(list.types[before]);
+        }
+        //Add the style of each token in the range
+        for (int i = first; i < list.size && list.starts[i] < end; ++i) {
+            int tokStart = Math.max(list.starts[i], start);
+            int tokEnd = Math.min(list.ends[i], end);
+            //First, make the style of any non-tokenized text before this token plain
+            if (tokStart - lastTokenEnd > 0)
+              spans.add(PLAIN, tokStart - lastTokenEnd);
+            //Stylize the text in the current token
+            if (list.types[i] == Token.OTHER && isWhitespace(text, tokStart, tokEnd))
+                spans.addWhitespace(tokEnd - tokStart);
+            else
+                spans.add(list.types[i], tokEnd - tokStart);
+            lastTokenEnd = tokEnd;
+        }
+        //Make the style of any remaining text plain
+        if (end - lastTokenEnd > 0)
+            spans.add(PLAIN, end - lastTokenEnd);
+
+        return spans.create();
+    }
+
+    //Whitespace takes its style from the token before it when merging spans, so whitespace
+    //straight after restyled text has to be restyled too
+    private static int pastWhitespace(TokenList list, CharSequence text, int offset) {
+        int i = list.firstEndingAfter(offset);
+        while (i < list.size && list.types[i] == Token.OTHER && isWhitespace(text, list.starts[i], list.ends[i]))
+            offset = list.ends[i++];
+        return offset;
+    }
+
+    private static boolean isWhitespace(CharSequence text, int start, int end) {
+        for (int i = start; i < end; ++i) {
+            if (!Character.isWhitespace(text.charAt(i)))
+                return false;
+        }
+        return true;
+    }
+
+    //The styles computed by a highlighting pass, starting at the given offset. Each result posted
+    //by a pass gets the next serial number, apart from provisional ones, which get -1. Results
+    //without styles only mark where a pass ended, for its statistics.
+    private static class Result<S> {
+        final int version;
+        final int serial;
+        final int start;
+        final StyleSpans<S> spans;
+        final HighlightingStatistics.Recorder record;
+        //Whether this is the pass's last result
+        final boolean last;
+
+        Result(int version, int serial, int start, StyleSpans<S> spans, HighlightingStatistics.Recorder record, boolean last) {
+            this.version = version;
+            this.serial = serial;
+            this.start = start;
+            this.spans = spans;
+            this.record = record;
+            this.last = last;
+        }
+    }
+
+    //The text whose styles may not have been applied, and how far the current pass has posted
+    //styles for. Works out the text each piece of a pass restyles.
+    static final class Restyle {
+        final Damage unstyled = new Damage();
+        int postedTo = -1;
+
+        //Starts a pass over the given changes. If everything the last pass posted was applied,
+        //the text it posted styles for no longer needs restyling.
+        void begin(Damage changes, boolean lastApplied) {
+            if (lastApplied)
+                unstyled.removeBefore(postedTo);
+            postedTo = -1;
+            unstyled.add(changes);
+        }
+
+        void clear() {
+            unstyled.clear();
+        }
+
+        //Returns the range to restyle once a piece of a pass has re-lexed tokens, as { from, to },
+        //or null if there's nothing to restyle. That's the tokens that changed, along with
+        //anything from results that were never applied. Until the pass is done, only the text
+        //before what's left to lex can be styled. A piece can resume a little before where the
+        //last one stopped, and change tokens the last one already posted styles for.
+        int[] next(TokenList tokens, CharSequence text, boolean done, boolean mergeSpans) {
+            unstyled.include(tokens.changedStart, tokens.changedEnd);
+            int from = Math.min(Math.max(unstyled.start, postedTo), tokens.changedStart);
+            int to = done ? unstyled.end : tokens.changedEnd;
+            if (done && mergeSpans)
+                to = pastWhitespace(tokens, text, to);
+            if (to <= from && !(done && postedTo < 0))
+                return null;
+            postedTo = to;
+            return new int[] { from, to };
+        }
+    }
+
+    //Adds spans to a StyleSpanArray, merging neighbouring spans for the same token type up front.
+    //When merging whitespace, whitespace is added to the span before it, which lets the spans
+    //either side of it merge too.
+    private static class SpanMerger<S> {
+        final StyleSpanArray.Builder<S> builder;
+        final boolean mergeWhitespace;
+        //The span not added to the builder yet, and whether whitespace can be merged into it
+        //while it's still empty
+        int type = PLAIN;
+        int length = 0;
+        boolean carried = false;
+
+        SpanMerger(StyleMapper<S> styleMapper, boolean mergeWhitespace, int capacity) {
+            builder = new StyleSpanArray.Builder<S>(styleMapper.styles, capacity);
+            this.mergeWhitespace = mergeWhitespace;
+        }
+
+        //Starts with the span of a token of the given type before the spans being added
+        void carry(int tokenType) {
+            type = tokenType;
+            carried = true;
+        }
+
+        void add(int tokenType, int spanLength) {
+            if (length > 0 && tokenType != type) {
+                builder.add(StyleMapper.styleId(type), length);
+                length = 0;
+            }
+            type = tokenType;
+            length += spanLength;
+            carried = false;
+        }
+
+        void addWhitespace(int spanLength) {
+            if (mergeWhitespace && (length > 0 || carried))
+                length += spanLength;
+            else
+                add(Token.OTHER, spanLength);
+        }
+
+        StyleSpans<S> create() {
+            //If there's no spans in the builder when create() is called, an exception is thrown.
+            //This happens when there's no text to highlight.
+            //To avoid this, the last span is added even if it's zero-length.
+            builder.add(StyleMapper.styleId(type), length);
+            return builder.create();
+        }
+    }
+
+    //The range of text visible while the document was at the given version
+    private static class Viewport {
+        final int version;
+        final int start;
+        final int end;
+
+        Viewport(int version, int start, int end) {
+            this.version = version;
+            this.start = start;
+            this.end = end;
+        }
+    }
+
+}
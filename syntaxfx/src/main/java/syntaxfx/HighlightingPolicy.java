@@ -0,0 +1,81 @@
+package syntaxfx;
+
+import java.time.Duration;
+
+/**
+ * Decides when a SyntaxArea re-highlights after an edit, and how much of the FX thread's time a
+ * highlighting pass may take in one go, from how long the last pass took.
+ */
+public interface HighlightingPolicy {
+
+    /**
+     * Returns how long to wait for further edits before highlighting, given how long the last
+     * pass took, or Duration.ZERO to highlight as soon as the FX thread is free. Each edit made
+     * while waiting starts the wait again.
+     */
+    Duration delay(Duration lastPassTime);
+
+    /**
+     * Returns the most time a pass run on the FX thread should take at a time, or null for no
+     * limit. Passes are then split into slices of about this long. Each slice lexes from the
+     * paragraph checkpoint the last one stopped at and applies its own styles, then leaves the
+     * rest of the pass until the FX thread has handled input and rendered.
+     */
+    default Duration fxThreadBudget() {
+        return null;
+    }
+
+    /**
+     * Returns a policy that waits as long as this one, but with the given FX thread budget (null
+     * for none).
+     */
+    default HighlightingPolicy withFxThreadBudget(Duration budget) {
+        HighlightingPolicy policy = this;
+        return new HighlightingPolicy() {
+            public Duration delay(Duration lastPassTime) {
+                return policy.delay(lastPassTime);
+            }
+
+            public Duration fxThreadBudget() {
+                return budget;
+            }
+        };
+    }
+
+    /**
+     * Always waits the given time for edits to stop, and never splits passes up. Before policies
+     * were added, SyntaxArea always waited 20ms.
+     */
+    static HighlightingPolicy fixed(Duration delay) {
+        return lastPassTime -> delay;
+    }
+
+    /**
+     * Highlights straight away after passes that took at most 4ms, and otherwise waits twice as
+     * long as the last pass took, up to half a second, so highlighting takes at most a third of
+     * the time while typing carries on. Passes on the FX thread take at most 10ms at a time.
+     */
+    static HighlightingPolicy adaptive() {
+        return adaptive(Duration.ofMillis(4), 2, Duration.ofMillis(500), Duration.ofMillis(10));
+    }
+
+    /**
+     * Highlights straight away after passes that took at most cheapPass, and otherwise waits
+     * backoff times as long as the last pass took, up to maxDelay. Passes on the FX thread take
+     * at most fxThreadBudget at a time, or as long as they need if it's null.
+     */
+    static HighlightingPolicy adaptive(Duration cheapPass, double backoff, Duration maxDelay, Duration fxThreadBudget) {
+        return new HighlightingPolicy() {
+            public Duration delay(Duration lastPassTime) {
+                if (lastPassTime.compareTo(cheapPass) <= 0)
+                    return Duration.ZERO;
+                long delay = (long)(lastPassTime.toNanos() * backoff);
+                return delay < maxDelay.toNanos() ? Duration.ofNanos(delay) : maxDelay;
+            }
+
+            public Duration fxThreadBudget() {
+                return fxThreadBudget;
+            }
+        };
+    }
+}
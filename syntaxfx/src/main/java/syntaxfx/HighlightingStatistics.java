@@ -0,0 +1,248 @@
+package syntaxfx;
+
+import java.time.Duration;
+import java.util.Arrays;
+
+import javafx.beans.property.ReadOnlyIntegerProperty;
+import javafx.beans.property.ReadOnlyIntegerWrapper;
+import javafx.beans.property.ReadOnlyObjectProperty;
+import javafx.beans.property.ReadOnlyObjectWrapper;
+
+/**
+ * Timings and counts of a SyntaxArea's highlighting passes, updated on the FX thread as passes
+ * finish. Listen to lastPassProperty() to see each pass as it completes. The percentiles cover
+ * the last 256 completed passes, so they follow how highlighting is doing at the moment.
+ */
+public final class HighlightingStatistics {
+
+    //How many of the latest passes the percentiles are taken over
+    private static final int WINDOW = 256;
+
+    private final ReadOnlyObjectWrapper<Pass> lastPass = new ReadOnlyObjectWrapper<Pass>(this, "lastPass");
+    private final ReadOnlyIntegerWrapper completedPasses = new ReadOnlyIntegerWrapper(this, "completedPasses");
+    private final ReadOnlyIntegerWrapper cancelledPasses = new ReadOnlyIntegerWrapper(this, "cancelledPasses");
+    private final ReadOnlyIntegerWrapper skippedPasses = new ReadOnlyIntegerWrapper(this, "skippedPasses");
+
+    //The timings of the latest passes, in nanoseconds. Pass n is at n % WINDOW.
+    private final long[] lexTimes = new long[WINDOW];
+    private final long[] buildTimes = new long[WINDOW];
+    private final long[] applyTimes = new long[WINDOW];
+    private final long[] passTimes = new long[WINDOW];
+
+    HighlightingStatistics() {
+    }
+
+    /**
+     * The last pass to complete, or null if none have yet.
+     */
+    public ReadOnlyObjectProperty<Pass> lastPassProperty() {
+        return lastPass.getReadOnlyProperty();
+    }
+
+    public Pass getLastPass() {
+        return lastPass.get();
+    }
+
+    /**
+     * The number of passes whose styles were all applied.
+     */
+    public ReadOnlyIntegerProperty completedPassesProperty() {
+        return completedPasses.getReadOnlyProperty();
+    }
+
+    public int getCompletedPasses() {
+        return completedPasses.get();
+    }
+
+    /**
+     * The number of passes abandoned part way through because the document changed again, along
+     * with any styles they'd computed.
+     */
+    public ReadOnlyIntegerProperty cancelledPassesProperty() {
+        return cancelledPasses.getReadOnlyProperty();
+    }
+
+    public int getCancelledPasses() {
+        return cancelledPasses.get();
+    }
+
+    /**
+     * The number of passes the document changed again before they could start, which happens when
+     * the last pass is still running on the executor.
+     */
+    public ReadOnlyIntegerProperty skippedPassesProperty() {
+        return skippedPasses.getReadOnlyProperty();
+    }
+
+    public int getSkippedPasses() {
+        return skippedPasses.get();
+    }
+
+    /**
+     * Returns the given percentile (from 0 to 100) of the lex times of the latest passes, or zero
+     * if no passes have completed.
+     */
+    public Duration getLexTimePercentile(double percentile) {
+        return percentile(lexTimes, percentile);
+    }
+
+    /**
+     * Returns the given percentile of the times the latest passes took to build their StyleSpans.
+     */
+    public Duration getBuildTimePercentile(double percentile) {
+        return percentile(buildTimes, percentile);
+    }
+
+    /**
+     * Returns the given percentile of the times the latest passes took to apply their styles.
+     */
+    public Duration getApplyTimePercentile(double percentile) {
+        return percentile(applyTimes, percentile);
+    }
+
+    /**
+     * Returns the given percentile of the total times of the latest passes.
+     */
+    public Duration getPassTimePercentile(double percentile) {
+        return percentile(passTimes, percentile);
+    }
+
+    /**
+     * Sets the counts back to zero and forgets the passes so far.
+     */
+    public void reset() {
+        lastPass.set(null);
+        completedPasses.set(0);
+        cancelledPasses.set(0);
+        skippedPasses.set(0);
+    }
+
+    private Duration percentile(long[] times, double percentile) {
+        if (!(percentile >= 0 && percentile <= 100))
+            throw new IllegalArgumentException("percentile must be from 0 to 100: " + percentile);
+        int count = Math.min(completedPasses.get(), WINDOW);
+        if (count == 0)
+            return Duration.ZERO;
+        long[] sorted = Arrays.copyOf(times, count);
+        Arrays.sort(sorted);
+        int rank = (int)Math.ceil(percentile / 100 * count);
+        return Duration.ofNanos(sorted[Math.max(rank - 1, 0)]);
+    }
+
+    void completed(Recorder recorder) {
+        if (recorder.finished)
+            return;
+        recorder.finished = true;
+        Pass pass = new Pass(recorder);
+        int slot = completedPasses.get() % WINDOW;
+        lexTimes[slot] = pass.lexNanos;
+        buildTimes[slot] = pass.buildNanos;
+        applyTimes[slot] = pass.applyNanos;
+        passTimes[slot] = pass.lexNanos + pass.buildNanos + pass.applyNanos;
+        completedPasses.set(completedPasses.get() + 1);
+        lastPass.set(pass);
+    }
+
+    void cancelled(Recorder recorder) {
+        if (recorder.finished)
+            return;
+        recorder.finished = true;
+        cancelledPasses.set(cancelledPasses.get() + 1);
+    }
+
+    void skipped() {
+        skippedPasses.set(skippedPasses.get() + 1);
+    }
+
+    //What a pass has done so far. The pass fills in the lexing and building on whichever thread it
+    //runs on, and the FX thread fills in the rest as it applies the pass's styles.
+    static final class Recorder {
+        long lexNanos;
+        long buildNanos;
+        long applyNanos;
+        int tokens;
+        int spans;
+        int charactersLexed;
+        boolean full;
+        boolean finished;
+    }
+
+    /**
+     * The timings and counts of one completed pass. Passes that highlight the visible paragraphs
+     * first include the time spent lexing them on their own.
+     */
+    public static final class Pass {
+
+        private final long lexNanos;
+        private final long buildNanos;
+        private final long applyNanos;
+        private final int tokens;
+        private final int spans;
+        private final int charactersLexed;
+        private final boolean full;
+
+        Pass(Recorder recorder) {
+            lexNanos = recorder.lexNanos;
+            buildNanos = recorder.buildNanos;
+            applyNanos = recorder.applyNanos;
+            tokens = recorder.tokens;
+            spans = recorder.spans;
+            charactersLexed = recorder.charactersLexed;
+            full = recorder.full;
+        }
+
+        public Duration getLexTime() {
+            return Duration.ofNanos(lexNanos);
+        }
+
+        /**
+         * Returns the time spent building StyleSpans from the tokens.
+         */
+        public Duration getBuildTime() {
+            return Duration.ofNanos(buildNanos);
+        }
+
+        /**
+         * Returns the time spent in setStyleSpans(), which is always on the FX thread.
+         */
+        public Duration getApplyTime() {
+            return Duration.ofNanos(applyNanos);
+        }
+
+        public Duration getTotalTime() {
+            return Duration.ofNanos(lexNanos + buildNanos + applyNanos);
+        }
+
+        /**
+         * Returns the number of tokens lexed.
+         */
+        public int getTokenCount() {
+            return tokens;
+        }
+
+        /**
+         * Returns the number of style spans built.
+         */
+        public int getSpanCount() {
+            return spans;
+        }
+
+        public int getCharactersLexed() {
+            return charactersLexed;
+        }
+
+        /**
+         * Returns whether the pass lexed the whole document, rather than just around the changes.
+         */
+        public boolean isFull() {
+            return full;
+        }
+
+        @Override
+        public String toString() {
+            return (full ? "full" : "incremental") + " pass: lexed " + charactersLexed + " chars, "
+                + tokens + " tokens in " + lexNanos / 1000 + "us, built " + spans + " spans in "
+                + buildNanos / 1000 + "us, applied in " + applyNanos / 1000 + "us";
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package syntaxfx;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+
+import org.fxmisc.richtext.LineNumberFactory;
+import org.fxmisc.richtext.StyledTextArea;
+
+import javafx.scene.text.Font;
+import javafx.scene.text.TextFlow;
+
+/**
+ * A code area that highlights like SyntaxArea, but gives text TextStyles worked out in advance
+ * instead of style classes. JavaFX then doesn't have to match every piece of text in the area
+ * against the stylesheets each time paragraphs are laid out or restyled, which is most of the
+ * cost of a restyle when many lines are visible. Themes written as stylesheets can be converted
+ * with TextStyle.fromStylesheet().
+ *
+ * It's a StyledTextArea rather than a SyntaxArea, since a SyntaxArea's text is styled with
+ * collections of style classes.
+ */
+public class InlineSyntaxArea extends StyledTextArea<String, TextStyle> {
+
+    final Highlighter<TextStyle> highlighter;
+
+    /**
+     * Creates an area styled like default.css, in the default monospaced font.
+     */
+    public InlineSyntaxArea() {
+        this(defaultStyles());
+    }
+
+    /**
+     * Creates an area giving each token type the style styleMapper maps it to. Text is given the
+     * plain style of styleMapper until it's been highlighted.
+     */
+    public InlineSyntaxArea(StyleMapper<TextStyle> styleMapper) {
+        super("", TextFlow::setStyle, styleMapper.getPlainStyle(), (text, style) -> style.applyTo(text));
+        setUseInitialStyleForInsertion(true);
+        setParagraphGraphicFactory(LineNumberFactory.get(this));
+        highlighter = new Highlighter<TextStyle>(this, styleMapper);
+    }
+
+    private static StyleMapper<TextStyle> defaultStyles() {
+        try {
+            Font font = Font.font("Monospaced", Font.getDefault().getSize());
+            return TextStyle.fromStylesheet(SyntaxArea.class.getResource("default.css"), font);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * See SyntaxArea.setLexer().
+     */
+    public void setLexer(Lexer lexer) {
+        highlighter.setLexer(lexer, null);
+    }
+
+    public Lexer getLexer() {
+        return highlighter.lexer;
+    }
+
+    /**
+     * See SyntaxArea.setLexerSpec().
+     */
+    public void setLexerSpec(LexerSpec lexerSpec) {
+        highlighter.setLexer(lexerSpec.createLexer(), lexerSpec);
+    }
+
+    public LexerSpec getLexerSpec() {
+        return highlighter.lexerSpec;
+    }
+
+    /**
+     * See SyntaxArea.setIncrementalHighlighting().
+     */
+    public void setIncrementalHighlighting(boolean incremental) {
+        highlighter.incremental = incremental;
+    }
+
+    public boolean isIncrementalHighlighting() {
+        return highlighter.incremental;
+    }
+
+    /**
+     * See SyntaxArea.setViewportFirstHighlighting().
+     */
+    public void setViewportFirstHighlighting(boolean viewportFirst) {
+        highlighter.setViewportFirst(viewportFirst);
+    }
+
+    public boolean isViewportFirstHighlighting() {
+        return highlighter.viewportFirst;
+    }
+
+    /**
+     * See SyntaxArea.setSpanMerging().
+     */
+    public void setSpanMerging(boolean mergeSpans) {
+        highlighter.setSpanMerging(mergeSpans);
+    }
+
+    public boolean isSpanMerging() {
+        return highlighter.mergeSpans;
+    }
+
+    /**
+     * Sets the style each token type is given, and re-highlights the document with them. Text
+     * typed before it's highlighted still gets the plain style the area was created with.
+     */
+    public void setStyleMapper(StyleMapper<TextStyle> styleMapper) {
+        highlighter.setStyleMapper(styleMapper);
+    }
+
+    public StyleMapper<TextStyle> getStyleMapper() {
+        return highlighter.styleMapper;
+    }
+
+    /**
+     * See SyntaxArea.setHighlightingPolicy().
+     */
+    public void setHighlightingPolicy(HighlightingPolicy policy) {
+        highlighter.policy = Objects.requireNonNull(policy);
+    }
+
+    public HighlightingPolicy getHighlightingPolicy() {
+        return highlighter.policy;
+    }
+
+    /**
+     * See SyntaxArea.setHighlightingExecutor().
+     */
+    public void setHighlightingExecutor(Executor executor) {
+        highlighter.executor = executor;
+    }
+
+    public Executor getHighlightingExecutor() {
+        return highlighter.executor;
+    }
+
+    /**
+     * See SyntaxArea.getHighlightingStatistics().
+     */
+    public HighlightingStatistics getHighlightingStatistics() {
+        return highlighter.statistics;
+    }
+
+}
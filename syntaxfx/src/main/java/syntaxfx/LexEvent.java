@@ -0,0 +1,39 @@
+package syntaxfx;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Recorded by Java Flight Recorder each time a highlighting pass runs a lexer over part of the
+ * document. Passes that lex the document a piece at a time record one event per piece.
+ */
+@Name("syntaxfx.Lex")
+@Label("Lex")
+@Category("SyntaxFX")
+@StackTrace(false)
+@Description("A lexer run over part of a document being highlighted")
+final class LexEvent extends Event {
+
+    @Label("Lexer")
+    Class<?> lexer;
+
+    @Label("Document Length")
+    int documentLength;
+
+    @Label("Region Start")
+    int regionStart;
+
+    @Label("Region End")
+    int regionEnd;
+
+    @Label("Token Count")
+    int tokenCount;
+
+    @Label("Provisional")
+    @Description("Whether the visible paragraphs were lexed on their own, ahead of the pass")
+    boolean provisional;
+}
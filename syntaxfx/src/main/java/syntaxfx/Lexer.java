@@ -3,4 +3,68 @@ package syntaxfx;
 public abstract class Lexer {
     public abstract void setString(String str);
     public abstract Token getNextToken();
+
+    /**
+     * Passes the next token to sink, returning false instead if there are no more tokens.
+     * Unlike getNextToken(), lexers that override this don't create a Token for each token.
+     */
+    public boolean nextToken(TokenSink sink) {
+        Token token = getNextToken();
+        if (token == null)
+            return false;
+        sink.accept(token.getTokenType(), token.getStart(), token.getEnd());
+        return true;
+    }
+
+    //The methods below let SyntaxArea re-lex only the part of a document affected by an edit.
+    //Lexers that don't override them are always re-lexed from the start of the document.
+
+    /**
+     * Sets the string to lex, resuming at the given offset in a state previously returned by
+     * saveState(). A null state means the start of a document.
+     *
+     * Lexers that don't override this can't resume part way through a string, so they lex it
+     * from the start whatever the offset, and the tokens before offset are found again too. They
+     * can't resume in a saved state.
+     */
+    public void setString(String str, int offset, LexerState state) {
+        if (state != null)
+            throw new UnsupportedOperationException("lexer cannot resume in a saved state");
+        setString(str);
+    }
+
+    /**
+     * Sets the text to lex to the characters of text from start up to end, resuming in a state
+     * previously returned by saveState() (null for the start of a document). Token offsets are
+     * relative to the start of text, and characters before start may still be looked at.
+     *
+     * Lexers that override this read the characters straight from text, without copying it.
+     * Others are given a copy of text up to end.
+     */
+    public void setText(CharSequence text, int start, int end, LexerState state) {
+        setString(text.subSequence(0, end).toString(), start, state);
+    }
+
+    /**
+     * Returns a snapshot of the lexer's state at its current position, or null if the lexer
+     * can't be resumed.
+     */
+    public LexerState saveState() {
+        return null;
+    }
+
+    /**
+     * Returns the offset lexing will continue from, or -1 if it isn't known.
+     */
+    public int getPosition() {
+        return -1;
+    }
+
+    /**
+     * Returns the offset just past the last character examined (including any lookahead)
+     * while producing the last token.
+     */
+    public int getScanEnd() {
+        return Integer.MAX_VALUE;
+    }
 }
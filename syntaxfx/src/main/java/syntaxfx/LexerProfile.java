@@ -0,0 +1,189 @@
+package syntaxfx;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Counts what a language's generated lexers do, action by action, to find the rules that make
+ * lexing it slow. For each action it counts how often it ran, the characters its matches consumed
+ * (including any an action skipped over itself), the DFA transitions taken to find them, and how
+ * far the DFA read past the end of each match looking for a longer one before backing up.
+ *
+ * Lexers only count once a profile is attached, e.g. by highlighting with the spec from
+ * profile(), and otherwise aren't slowed down. A profile counts a single language, and the
+ * lexers counting into it must not run at the same time.
+ */
+public final class LexerProfile {
+
+    private LexerTables tables = null;
+    private long[] invocations = new long[0];
+    private long[] charactersConsumed = new long[0];
+    private long[] transitions = new long[0];
+    private long[] backtracked = new long[0];
+    private long tokens = 0;
+
+    /**
+     * Returns a spec creating lexers from spec that count into this profile. spec must create
+     * generated lexers (DfaLexers).
+     */
+    public LexerSpec profile(LexerSpec spec) {
+        return () -> {
+            Lexer lexer = spec.createLexer();
+            if (!(lexer instanceof DfaLexer))
+                throw new IllegalArgumentException("only generated lexers can be profiled");
+            ((DfaLexer)lexer).setProfile(this);
+            return lexer;
+        };
+    }
+
+    /**
+     * Makes lexer count into this profile from now on, and returns it.
+     */
+    public <L extends DfaLexer> L profile(L lexer) {
+        lexer.setProfile(this);
+        return lexer;
+    }
+
+    void bind(LexerTables lexerTables) {
+        if (tables == null) {
+            tables = lexerTables;
+            if (tables.actionNames != null)
+                resize(tables.actionNames.length);
+        } else if (tables != lexerTables) {
+            throw new IllegalArgumentException("a profile can only count one language");
+        }
+    }
+
+    void count(int action, int actionTransitions, int overshoot, int consumed, boolean token) {
+        //Lexers without action names only show which actions they have as they run
+        if (action >= invocations.length)
+            resize(action + 1);
+        ++invocations[action];
+        charactersConsumed[action] += consumed;
+        transitions[action] += actionTransitions;
+        backtracked[action] += overshoot;
+        if (token)
+            ++tokens;
+    }
+
+    private void resize(int length) {
+        invocations = Arrays.copyOf(invocations, length);
+        charactersConsumed = Arrays.copyOf(charactersConsumed, length);
+        transitions = Arrays.copyOf(transitions, length);
+        backtracked = Arrays.copyOf(backtracked, length);
+    }
+
+    /**
+     * Returns the names of the language's actions, in the order the language declares them.
+     */
+    public List<String> getActions() {
+        List<String> actions = new ArrayList<String>();
+        for (int i = 0; i < invocations.length; ++i)
+            actions.add(actionName(i));
+        return Collections.unmodifiableList(actions);
+    }
+
+    public long getInvocations(String action) {
+        return countFor(invocations, action);
+    }
+
+    public long getCharactersConsumed(String action) {
+        return countFor(charactersConsumed, action);
+    }
+
+    public long getTransitions(String action) {
+        return countFor(transitions, action);
+    }
+
+    /**
+     * Returns how many characters the DFA read past the end of the given action's matches.
+     */
+    public long getBacktracked(String action) {
+        return countFor(backtracked, action);
+    }
+
+    public long getCharactersConsumed() {
+        return sum(charactersConsumed);
+    }
+
+    public long getTransitions() {
+        return sum(transitions);
+    }
+
+    public long getBacktracked() {
+        return sum(backtracked);
+    }
+
+    /**
+     * Returns the number of tokens found, which is fewer than the actions run if some of them
+     * (such as those for the text inside comments) don't produce tokens.
+     */
+    public long getTokens() {
+        return tokens;
+    }
+
+    /**
+     * Sets every count back to zero.
+     */
+    public void reset() {
+        Arrays.fill(invocations, 0);
+        Arrays.fill(charactersConsumed, 0);
+        Arrays.fill(transitions, 0);
+        Arrays.fill(backtracked, 0);
+        tokens = 0;
+    }
+
+    /**
+     * Returns the totals, followed by a table of the counts of each action that has run, most
+     * transitions first.
+     */
+    @Override
+    public String toString() {
+        long consumed = getCharactersConsumed();
+        long allTransitions = getTransitions();
+        long allBacktracked = getBacktracked();
+        StringBuilder report = new StringBuilder();
+        report.append(String.format("%d chars, %d tokens, %d transitions (%.2f per char), %d backtracked (%.2f per char)%n",
+            consumed, tokens, allTransitions, perChar(allTransitions, consumed), allBacktracked, perChar(allBacktracked, consumed)));
+        report.append(String.format("%-24s %12s %12s %12s %12s%n", "action", "invocations", "chars", "transitions", "backtracked"));
+
+        Integer[] order = new Integer[invocations.length];
+        for (int i = 0; i < order.length; ++i)
+            order[i] = i;
+        Arrays.sort(order, (a, b) -> Long.compare(transitions[b], transitions[a]));
+        for (int i : order) {
+            if (invocations[i] == 0)
+                continue;
+            report.append(String.format("%-24s %12d %12d %12d %12d%n",
+                actionName(i), invocations[i], charactersConsumed[i], transitions[i], backtracked[i]));
+        }
+        return report.toString();
+    }
+
+    private String actionName(int action) {
+        if (tables.actionNames != null && action < tables.actionNames.length)
+            return tables.actionNames[action];
+        return "action " + action;
+    }
+
+    private long countFor(long[] counts, String action) {
+        for (int i = 0; i < counts.length; ++i) {
+            if (actionName(i).equals(action))
+                return counts[i];
+        }
+        return 0;
+    }
+
+    private static long sum(long[] counts) {
+        long sum = 0;
+        for (long count : counts)
+            sum += count;
+        return sum;
+    }
+
+    private static double perChar(long count, long consumed) {
+        return consumed == 0 ? 0 : (double)count / consumed;
+    }
+}
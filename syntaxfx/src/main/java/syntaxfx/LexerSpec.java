@@ -0,0 +1,11 @@
+package syntaxfx;
+
+/**
+ * A language a SyntaxArea can highlight, which creates lexers for it. Lexers hold the state of
+ * a single scan and are used by one thread at a time, while a spec can be shared freely: the
+ * lexers it creates share the language's tables, so each is cheap to create.
+ */
+@FunctionalInterface
+public interface LexerSpec {
+    Lexer createLexer();
+}
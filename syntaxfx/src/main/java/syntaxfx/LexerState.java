@@ -0,0 +1,56 @@
+package syntaxfx;
+
+import java.util.Arrays;
+
+/**
+ * An immutable snapshot of a lexer's state between two tokens, which can be handed back to
+ * Lexer.setString() to resume lexing at that point.
+ *
+ * The snapshot holds the stack of lexical states (bottom first) and how far back from the
+ * current position the token being built started. Since nothing in it is an absolute offset,
+ * it stays valid when text before it is inserted or removed.
+ */
+public final class LexerState {
+
+    private final int[] states;
+    private final int tokenOffset;
+
+    public LexerState(int[] states, int tokenOffset) {
+        this.states = states.clone();
+        this.tokenOffset = tokenOffset;
+    }
+
+    //Takes the bottom depth states of a lexer's state stack
+    LexerState(int[] states, int depth, int tokenOffset) {
+        this.states = Arrays.copyOf(states, depth);
+        this.tokenOffset = tokenOffset;
+    }
+
+    public int getDepth() {
+        return states.length;
+    }
+
+    public int getState(int index) {
+        return states[index];
+    }
+
+    public int getTokenOffset() {
+        return tokenOffset;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj)
+            return true;
+        if (!(obj instanceof LexerState))
+            return false;
+        LexerState other = (LexerState)obj;
+        return tokenOffset == other.tokenOffset && Arrays.equals(states, other.states);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Arrays.hashCode(states) + tokenOffset;
+    }
+
+}
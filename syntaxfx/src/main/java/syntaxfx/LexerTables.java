@@ -0,0 +1,95 @@
+package syntaxfx;
+
+import java.util.Arrays;
+
+/**
+ * The DFA of a generated lexer: which class each char is in, the transitions between states for
+ * each class, and the action each accepting state performs. Tables never change once decoded, so
+ * all of a language's lexers share one.
+ */
+public final class LexerTables {
+    static final int NO_TRANSITION = -1;
+    static final int STATE_MASK = 0xFFFF;
+    static final int ACTION_SHIFT = 16;
+
+    final CharacterMap characterMap;
+    //Each entry is the offset of the row of the state a transition goes to in the low bits, and
+    //one more than the action of that state (0 if it doesn't accept) above ACTION_SHIFT, or
+    //NO_TRANSITION
+    final int[] transitions;
+    //The row offset of the state each lexical state starts in
+    final int[] startStates;
+    //The name of each action, for LexerProfile, or null if they aren't known
+    final String[] actionNames;
+
+    private LexerTables(CharacterMap characterMap, int[] transitions, int[] startStates, String[] actionNames) {
+        this.characterMap = characterMap;
+        this.transitions = transitions;
+        this.startStates = startStates;
+        this.actionNames = actionNames;
+    }
+
+    int startState(int lexicalState) {
+        if (lexicalState < 0 || lexicalState >= startStates.length)
+            throw new IllegalArgumentException("invalid lexical state");
+        return startStates[lexicalState];
+    }
+
+    /**
+     * Decodes the run-length encoded tables written by the lexer generator. startStates gives the
+     * DFA state each lexical state starts in, indexed by lexical state.
+     */
+    public static LexerTables decode(int stateCount, int classCount, int[] startStates,
+            String characterMapData, String transitionTableData, String actionMapData) {
+        return decode(stateCount, classCount, startStates, characterMapData, transitionTableData, actionMapData, null);
+    }
+
+    /**
+     * Like decode() without actionNames, but also gives the name of each action (the method
+     * action() calls for it), which LexerProfile reports the counts of each action under.
+     */
+    public static LexerTables decode(int stateCount, int classCount, int[] startStates,
+            String characterMapData, String transitionTableData, String actionMapData, String[] actionNames) {
+        byte[] actions = decodeActions(stateCount, actionMapData);
+        int[] transitions = decodeTransitions(stateCount, classCount, transitionTableData, actions);
+        int[] startOffsets = new int[startStates.length];
+        for (int i = 0; i < startStates.length; ++i)
+            startOffsets[i] = startStates[i] * classCount;
+        return new LexerTables(CharacterMap.decode(characterMapData), transitions, startOffsets, actionNames);
+    }
+
+    private static int[] decodeTransitions(int stateCount, int classCount, String transitionTableData,
+            byte[] actions) {
+        if (stateCount * classCount > STATE_MASK)
+            throw new IllegalArgumentException("transition table too large");
+        int[] transitions = new int[stateCount * classCount];
+        int length = transitionTableData.length();
+        int i = 0;
+        int j = 0;
+        while (i < length) {
+            int curValue = (short)transitionTableData.charAt(i++) - 1;
+            int entry = NO_TRANSITION;
+            if (curValue != -1)
+                entry = curValue * classCount | (actions[curValue] + 1) << ACTION_SHIFT;
+            //Arrays.fill is already compiled when a lexer is first loaded, unlike a loop here
+            int count = transitionTableData.charAt(i++);
+            Arrays.fill(transitions, j, j + count, entry);
+            j += count;
+        }
+        return transitions;
+    }
+
+    private static byte[] decodeActions(int stateCount, String actionMapData) {
+        byte[] actions = new byte[stateCount];
+        int length = actionMapData.length();
+        int i = 0;
+        int j = 0;
+        while (i < length) {
+            byte curValue = (byte)((short)actionMapData.charAt(i++) - 1);
+            int count = actionMapData.charAt(i++);
+            Arrays.fill(actions, j, j + count, curValue);
+            j += count;
+        }
+        return actions;
+    }
+}
@@ -0,0 +1,35 @@
+package syntaxfx;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Recorded by Java Flight Recorder each time styles computed by a highlighting pass are applied
+ * to an area, which happens on the FX thread.
+ */
+@Name("syntaxfx.ApplyStyles")
+@Label("Apply Styles")
+@Category("SyntaxFX")
+@StackTrace(false)
+@Description("Styles from a highlighting pass applied to an area")
+final class StyleEvent extends Event {
+
+    @Label("Area")
+    Class<?> area;
+
+    @Label("Document Length")
+    int documentLength;
+
+    @Label("Region Start")
+    int regionStart;
+
+    @Label("Region End")
+    int regionEnd;
+
+    @Label("Span Count")
+    int spanCount;
+}
@@ -0,0 +1,93 @@
+package syntaxfx;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.function.IntFunction;
+
+/**
+ * Maps the type of each token to the style highlighting gives it. The styles are worked out once,
+ * when the mapper is created, and shared by every span of their type, so a highlighting pass only
+ * has to look them up in an array.
+ *
+ * The styles can be anything the area styles text with, such as CSS style classes or inline
+ * style objects. Token types a lexer makes up of its own get the style of Token.OTHER.
+ */
+public final class StyleMapper<S> {
+    /**
+     * The style classes of default.css, which give each token type a class named after it.
+     */
+    public static final StyleMapper<Collection<String>> STYLE_CLASSES =
+        styleClasses(StyleMapper::defaultStyleClass);
+
+    //The style for plain text at index 0, then the style of each token type at one past its type
+    final S[] styles;
+
+    private StyleMapper(S[] styles) {
+        this.styles = styles;
+    }
+
+    /**
+     * Creates a mapper giving each token type the style styleOf returns for it, and text that
+     * isn't part of any token plainStyle. styleOf is called once for each type in Token.
+     */
+    @SuppressWarnings("unchecked")
+    public static <S> StyleMapper<S> of(S plainStyle, IntFunction<? extends S> styleOf) {
+        S[] styles = (S[])new Object[Token.OTHER + 2];
+        styles[0] = plainStyle;
+        for (int type = 0; type <= Token.OTHER; ++type)
+            styles[type + 1] = styleOf.apply(type);
+        return new StyleMapper<S>(styles);
+    }
+
+    /**
+     * Creates a mapper giving each token type the one style class styleClassOf returns for it,
+     * or none if it returns null.
+     */
+    public static StyleMapper<Collection<String>> styleClasses(IntFunction<String> styleClassOf) {
+        return of(Collections.emptyList(), type -> {
+            String styleClass = styleClassOf.apply(type);
+            return styleClass != null ? Collections.singleton(styleClass) : Collections.emptyList();
+        });
+    }
+
+    /**
+     * Returns the style of the given token type.
+     */
+    public S getStyle(int tokenType) {
+        return styles[styleId(tokenType)];
+    }
+
+    /**
+     * Returns the style of text that isn't part of any token.
+     */
+    public S getPlainStyle() {
+        return styles[0];
+    }
+
+    //The index of the style of the given token type, or of plain text for PLAIN (-1)
+    static int styleId(int tokenType) {
+        if (tokenType == -1)
+            return 0;
+        return tokenType >= 0 && tokenType <= Token.OTHER ? tokenType + 1 : Token.OTHER + 1;
+    }
+
+    private static String defaultStyleClass(int tokenType) {
+        switch (tokenType) {
+            case Token.OPERATOR: return "operator";
+            case Token.KEYWORD: return "keyword";
+            case Token.KEYWORD2: return "keyword2";
+            case Token.IDENTIFIER: return "identifier";
+            case Token.STRING: return "string";
+            case Token.COMMENT: return "comment";
+            case Token.DOC_COMMENT: return "doc_comment";
+            case Token.DOC_COMMENT_TAG: return "doc_comment_tag";
+            case Token.TYPE: return "type";
+            case Token.NUMBER: return "number";
+            case Token.FUNCTION: return "function";
+            case Token.MEMBER_VAR: return "member_var";
+            case Token.NAMESPACE: return "namespace";
+            case Token.PREPROCESSOR: return "preprocessor";
+            default: return "other";
+        }
+    }
+}
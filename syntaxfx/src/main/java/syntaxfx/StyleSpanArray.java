@@ -0,0 +1,117 @@
+package syntaxfx;
+
+import java.util.Arrays;
+
+import org.fxmisc.richtext.model.StyleSpan;
+import org.fxmisc.richtext.model.StyleSpans;
+import org.fxmisc.richtext.model.TwoLevelNavigator;
+
+/**
+ * StyleSpans kept as parallel arrays of span lengths and style ids, where each id indexes a table
+ * of styles shared by every span. Building one allocates nothing per span, unlike
+ * StyleSpansBuilder; StyleSpan objects are only created when RichTextFX asks for a span.
+ */
+final class StyleSpanArray<S> implements StyleSpans<S> {
+    private final S[] styles;
+    private final byte[] ids;
+    private final int[] lengths;
+    private final int count;
+    private final int length;
+    private final TwoLevelNavigator navigator;
+
+    private StyleSpanArray(S[] styles, byte[] ids, int[] lengths, int count, int length) {
+        this.styles = styles;
+        this.ids = ids;
+        this.lengths = lengths;
+        this.count = count;
+        this.length = length;
+        navigator = new TwoLevelNavigator(() -> count, i -> lengths[i]);
+    }
+
+    public int length() {
+        return length;
+    }
+
+    public int getSpanCount() {
+        return count;
+    }
+
+    public StyleSpan<S> getStyleSpan(int index) {
+        if (index < 0 || index >= count)
+            throw new IndexOutOfBoundsException(String.valueOf(index));
+        return new StyleSpan<S>(styles[ids[index]], lengths[index]);
+    }
+
+    public Position position(int major, int minor) {
+        return navigator.position(major, minor);
+    }
+
+    public Position offsetToPosition(int offset, Bias bias) {
+        return navigator.offsetToPosition(offset, bias);
+    }
+
+    //Same as RichTextFX's own StyleSpans, so the two compare equal span by span
+    @Override
+    public boolean equals(Object other) {
+        if (!(other instanceof StyleSpans))
+            return false;
+        StyleSpans<?> that = (StyleSpans<?>)other;
+        if (that.getSpanCount() != count)
+            return false;
+        for (int i = 0; i < count; ++i) {
+            if (!getStyleSpan(i).equals(that.getStyleSpan(i)))
+                return false;
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = 1;
+        for (int i = 0; i < count; ++i)
+            result = 31 * result + getStyleSpan(i).hashCode();
+        return result;
+    }
+
+    /**
+     * Collects spans by style id. Like StyleSpansBuilder, spans with the same style as the one
+     * before are merged and empty spans are dropped, unless there would be no spans at all.
+     */
+    static final class Builder<S> {
+        private final S[] styles;
+        private byte[] ids;
+        private int[] lengths;
+        private int count = 0;
+        private int length = 0;
+
+        Builder(S[] styles, int capacity) {
+            this.styles = styles;
+            ids = new byte[Math.max(capacity, 1)];
+            lengths = new int[Math.max(capacity, 1)];
+        }
+
+        void add(int id, int spanLength) {
+            if (count > 0 && spanLength == 0)
+                return;
+            length += spanLength;
+            if (count > 0 && (ids[count - 1] == id || lengths[count - 1] == 0 && count == 1)) {
+                ids[count - 1] = (byte)id;
+                lengths[count - 1] += spanLength;
+                return;
+            }
+            if (count == ids.length) {
+                ids = Arrays.copyOf(ids, count * 2);
+                lengths = Arrays.copyOf(lengths, count * 2);
+            }
+            ids[count] = (byte)id;
+            lengths[count] = spanLength;
+            ++count;
+        }
+
+        StyleSpanArray<S> create() {
+            if (count == 0)
+                throw new IllegalStateException("no spans to create StyleSpans from");
+            return new StyleSpanArray<S>(styles, ids, lengths, count, length);
+        }
+    }
+}
@@ -1,95 +1,150 @@
 package syntaxfx;
 
-import java.time.Duration;
 import java.util.Collection;
-import java.util.Collections;
-import java.util.List;
-
-import java.util.function.Consumer;
+import java.util.Objects;
+import java.util.concurrent.Executor;
 
 import org.fxmisc.richtext.CodeArea;
 import org.fxmisc.richtext.LineNumberFactory;
-import org.fxmisc.richtext.model.PlainTextChange;
-import org.fxmisc.richtext.model.StyleSpans;
-import org.fxmisc.richtext.model.StyleSpansBuilder;
-
-import org.reactfx.Subscription;
-
-import javafx.application.Platform;
-
-import syntaxfx.lexers.JavaLexer;
 
 public class SyntaxArea extends CodeArea {
 
-    protected Lexer lexer = new JavaLexer();
-    Subscription highlighter;
+    final Highlighter<Collection<String>> highlighter = new Highlighter<Collection<String>>(this, StyleMapper.STYLE_CLASSES);
+
+    /**
+     * The lexer last set with setLexer() or setLexerSpec(), kept for subclasses that read it.
+     *
+     * @deprecated Assigning it doesn't change the language highlighted. Use getLexer(),
+     * setLexer() or setLexerSpec() instead.
+     */
+    @Deprecated
+    protected Lexer lexer = highlighter.lexer;
 
     public SyntaxArea() {
         setParagraphGraphicFactory(LineNumberFactory.get(this));
-
-        //Recompute the syntax highlighting repeatedly
-        highlighter = this.multiPlainChanges()
-            .successionEnds(Duration.ofMillis(20))
-            .subscribe(ignore -> setStyleSpans(0, computeHighlighting(getText())));
     }
 
     public void setLexer(Lexer lexer) {
         this.lexer = lexer;
-        //Recalculate the syntax highlighting
-        setStyleSpans(0, computeHighlighting(getText()));
+        highlighter.setLexer(lexer, null);
     }
 
     public Lexer getLexer() {
-        return lexer;
-    }
-
-    private StyleSpans<Collection<String>> computeHighlighting(String text) {
-        //Initialize the lexer
-        lexer.setString(text);
-        int lastTokenEnd = 0;
-        StyleSpansBuilder<Collection<String>> spansBuilder = new StyleSpansBuilder<Collection<String>>();
-        //While we continue to get tokens, add their style
-        Token tok = lexer.getNextToken();
-        while (tok != null) {
-            //Grab the correct style class
-            String styleClass = "";
-            switch (tok.getTokenType()) {
-                case Token.OPERATOR: styleClass = "operator"; break;
-                case Token.KEYWORD: styleClass = "keyword"; break;
-                case Token.KEYWORD2: styleClass = "keyword2"; break;
-                case Token.IDENTIFIER: styleClass = "identifier"; break;
-                case Token.STRING: styleClass = "string"; break;
-                case Token.COMMENT: styleClass = "comment"; break;
-                case Token.DOC_COMMENT: styleClass = "doc_comment"; break;
-                case Token.DOC_COMMENT_TAG: styleClass = "doc_comment_tag"; break;
-                case Token.TYPE: styleClass = "type"; break;
-                case Token.NUMBER: styleClass = "number"; break;
-                case Token.FUNCTION: styleClass = "function"; break;
-                case Token.MEMBER_VAR: styleClass = "member_var"; break;
-                case Token.NAMESPACE: styleClass = "namespace"; break;
-                case Token.PREPROCESSOR: styleClass = "preprocessor"; break;
-                default: styleClass = "other";
-            }
-            //First, make the style of any non-tokenized text before this token plain
-            if (tok.getStart() - lastTokenEnd > 0)
-              spansBuilder.add(Collections.emptyList(), tok.getStart() - lastTokenEnd);
-            //Stylize the text in the current token
-            spansBuilder.add(Collections.singleton(styleClass), tok.getLength());
-            lastTokenEnd = tok.getEnd();
-
-            tok = lexer.getNextToken();
-        }
-        //Make the style of any remaining text plain
-        if (text.length() - lastTokenEnd > 0)
-            spansBuilder.add(Collections.emptyList(), text.length() - lastTokenEnd);
-        //If there's no spans in the spansBuilder when create() is called, an exception is thrown.
-        //This happens when there's no text in the SyntaxArea.
-        //To avoid this, we simply create a zero-length span.
-        if (lastTokenEnd == 0)
-            spansBuilder.add(Collections.emptyList(), 0);
-
-        return spansBuilder.create();
+        return highlighter.lexer;
     }
 
-}
+    /**
+     * Sets the language to highlight. Unlike setLexer(), every highlighting pass gets a lexer of
+     * its own from the spec, so one spec can be shared by any number of areas and executors.
+     */
+    public void setLexerSpec(LexerSpec lexerSpec) {
+        lexer = lexerSpec.createLexer();
+        highlighter.setLexer(lexer, lexerSpec);
+    }
+
+    /**
+     * Returns the spec passed to setLexerSpec(), or null if a lexer was set with setLexer().
+     */
+    public LexerSpec getLexerSpec() {
+        return highlighter.lexerSpec;
+    }
 
+    /**
+     * Sets whether edits re-lex only the part of the document they affect (the default),
+     * or the whole document.
+     */
+    public void setIncrementalHighlighting(boolean incremental) {
+        highlighter.incremental = incremental;
+    }
+
+    public boolean isIncrementalHighlighting() {
+        return highlighter.incremental;
+    }
+
+    /**
+     * Sets whether the visible paragraphs are highlighted before the rest of the document.
+     *
+     * When enabled, passes lex the document a piece at a time, posting the styles of each piece
+     * as they go. Visible paragraphs the pass hasn't reached yet are lexed on their own first,
+     * as if they started the document, and corrected once the pass gets to them. Without an
+     * executor, the pieces run on the FX thread between frames.
+     */
+    public void setViewportFirstHighlighting(boolean viewportFirst) {
+        highlighter.setViewportFirst(viewportFirst);
+    }
+
+    public boolean isViewportFirstHighlighting() {
+        return highlighter.viewportFirst;
+    }
+
+    /**
+     * Sets whether whitespace takes the style of the token before it, instead of being styled as
+     * OTHER (the default). Tokens either side of the whitespace can then share a style span,
+     * which typically cuts the number of spans, and the memory and layout work they take, by a
+     * third or more.
+     * Whitespace only looks different if the theme gives tokens a background or an underline.
+     * Changing it re-highlights the whole document.
+     */
+    public void setSpanMerging(boolean mergeSpans) {
+        highlighter.setSpanMerging(mergeSpans);
+    }
+
+    public boolean isSpanMerging() {
+        return highlighter.mergeSpans;
+    }
+
+    /**
+     * Sets the style classes each token type is given, and re-highlights the document with them.
+     * The default is StyleMapper.STYLE_CLASSES, which default.css is written for.
+     */
+    public void setStyleMapper(StyleMapper<Collection<String>> styleMapper) {
+        highlighter.setStyleMapper(styleMapper);
+    }
+
+    public StyleMapper<Collection<String>> getStyleMapper() {
+        return highlighter.styleMapper;
+    }
+
+    /**
+     * Sets when edits are re-highlighted, and how long a pass on the FX thread may take at a
+     * time. The default, HighlightingPolicy.adaptive(), highlights straight away while passes
+     * are cheap and waits longer for typing to stop the longer they take.
+     */
+    public void setHighlightingPolicy(HighlightingPolicy policy) {
+        highlighter.policy = Objects.requireNonNull(policy);
+    }
+
+    public HighlightingPolicy getHighlightingPolicy() {
+        return highlighter.policy;
+    }
+
+    /**
+     * Sets the executor highlighting passes run on, or null (the default) to run them on the
+     * JavaFX application thread. Passes run one at a time against a snapshot of the document,
+     * and a pass is abandoned as soon as the document changes again. An exception a pass throws
+     * on the executor is rethrown on the JavaFX application thread.
+     *
+     * Without an executor, long passes are split into time slices between frames, so that none
+     * takes more than the FX thread budget of the highlighting policy (10ms by default). Set it
+     * with e.g. setHighlightingPolicy(HighlightingPolicy.adaptive().withFxThreadBudget(...)).
+     *
+     * A lexer set with setLexer() is used by the executor's threads from then on, so it must not
+     * be shared with another SyntaxArea. Lexers created from a LexerSpec aren't shared.
+     */
+    public void setHighlightingExecutor(Executor executor) {
+        highlighter.executor = executor;
+    }
+
+    public Executor getHighlightingExecutor() {
+        return highlighter.executor;
+    }
+
+    /**
+     * Returns the timings and counts of the area's highlighting passes, which are updated on the
+     * FX thread as each pass finishes.
+     */
+    public HighlightingStatistics getHighlightingStatistics() {
+        return highlighter.statistics;
+    }
+
+}
@@ -0,0 +1,132 @@
+package syntaxfx;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+
+import javafx.css.CompoundSelector;
+import javafx.css.CssParser;
+import javafx.css.Declaration;
+import javafx.css.Rule;
+import javafx.css.Selector;
+import javafx.css.SimpleSelector;
+import javafx.scene.paint.Color;
+import javafx.scene.paint.Paint;
+import javafx.scene.text.Font;
+import javafx.scene.text.FontPosture;
+import javafx.scene.text.FontWeight;
+import javafx.scene.text.Text;
+
+/**
+ * How InlineSyntaxArea draws a token: its fill, font and whether it's underlined. These are set
+ * straight on the text's nodes, so unlike style classes nothing has to be looked up in the
+ * stylesheets whenever a paragraph is laid out.
+ */
+public final class TextStyle {
+
+    private final Paint fill;
+    private final Font font;
+    private final boolean underline;
+
+    public TextStyle(Paint fill, Font font, boolean underline) {
+        this.fill = Objects.requireNonNull(fill);
+        this.font = Objects.requireNonNull(font);
+        this.underline = underline;
+    }
+
+    public Paint getFill() {
+        return fill;
+    }
+
+    public Font getFont() {
+        return font;
+    }
+
+    public boolean isUnderline() {
+        return underline;
+    }
+
+    void applyTo(Text text) {
+        text.setFill(fill);
+        text.setFont(font);
+        text.setUnderline(underline);
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (!(other instanceof TextStyle))
+            return false;
+        TextStyle that = (TextStyle)other;
+        return fill.equals(that.fill) && font.equals(that.font) && underline == that.underline;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(fill, font, underline);
+    }
+
+    /**
+     * Converts a theme written for SyntaxArea, such as default.css, into the TextStyle of each
+     * token type, going by the default style classes. The stylesheet is only read here, once.
+     */
+    public static StyleMapper<TextStyle> fromStylesheet(URL stylesheet, Font font) throws IOException {
+        return fromStylesheet(stylesheet, font, StyleMapper.STYLE_CLASSES);
+    }
+
+    /**
+     * Converts a theme written for SyntaxArea into the TextStyle of each token type, given the
+     * style classes each type has. font is the font of plain text, which the theme can make bold
+     * or italic.
+     *
+     * Only -fx-fill, -fx-font-weight, -fx-font-style and -fx-underline are converted. Rules apply
+     * to the style classes at the end of their selectors, regardless of the rest of the selector
+     * or any pseudo-classes.
+     */
+    public static StyleMapper<TextStyle> fromStylesheet(URL stylesheet, Font font,
+            StyleMapper<Collection<String>> styleClasses) throws IOException {
+        List<Rule> rules = new CssParser().parse(stylesheet).getRules();
+        TextStyle plainStyle = resolve(rules, styleClasses.getPlainStyle(), font);
+        return StyleMapper.of(plainStyle, type -> resolve(rules, styleClasses.getStyle(type), font));
+    }
+
+    //Applies the declarations of every rule for the given style classes, in stylesheet order
+    private static TextStyle resolve(List<Rule> rules, Collection<String> classes, Font font) {
+        Paint fill = Color.BLACK;
+        FontWeight weight = FontWeight.NORMAL;
+        FontPosture posture = FontPosture.REGULAR;
+        boolean underline = false;
+        for (Rule rule : rules) {
+            if (!appliesTo(rule, classes))
+                continue;
+            for (Declaration declaration : rule.getDeclarations()) {
+                Object value = declaration.getParsedValue().convert(font);
+                switch (declaration.getProperty()) {
+                    case "-fx-fill": fill = (Paint)value; break;
+                    case "-fx-font-weight": weight = (FontWeight)value; break;
+                    case "-fx-font-style": posture = (FontPosture)value; break;
+                    case "-fx-underline": underline = (Boolean)value; break;
+                    default: break;
+                }
+            }
+        }
+        return new TextStyle(fill, Font.font(font.getFamily(), weight, posture, font.getSize()), underline);
+    }
+
+    private static boolean appliesTo(Rule rule, Collection<String> classes) {
+        for (Selector selector : rule.getSelectors()) {
+            SimpleSelector last;
+            if (selector instanceof CompoundSelector) {
+                List<SimpleSelector> parts = ((CompoundSelector)selector).getSelectors();
+                last = parts.get(parts.size() - 1);
+            } else {
+                last = (SimpleSelector)selector;
+            }
+            List<String> needed = last.getStyleClasses();
+            if (!needed.isEmpty() && classes.containsAll(needed))
+                return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,410 @@
+package syntaxfx;
+
+import java.util.Arrays;
+import java.util.function.BooleanSupplier;
+
+/**
+ * The tokens found by the last highlighting pass, together with a lexer checkpoint for the start
+ * of each paragraph. After an edit, relex() resumes lexing at the checkpoint of the paragraph
+ * the edit could first have affected, and splices the new tokens into the list.
+ */
+class TokenList implements TokenSink {
+
+    //How many tokens to lex between checks for cancellation
+    private static final int CANCEL_CHECK_INTERVAL = 1024;
+
+    //Passed to relex() for no deadline
+    static final long NO_DEADLINE = Long.MAX_VALUE;
+
+    //How many non-OTHER tokens past the edit must match the previous pass before lexing stops.
+    //Identifiers look back through whitespace at up to two characters, so two matching tokens
+    //guarantee that nothing after them looks back into the edited text.
+    private static final int SYNC_TOKENS = 2;
+
+    int size = 0;
+    int[] types = new int[64];
+    int[] starts = new int[64];
+    int[] ends = new int[64];
+    //The offset just past the last character the lexer examined for each token
+    int[] scanEnds = new int[64];
+    //The largest scan end of each token and every token before it
+    int[] reach = new int[64];
+
+    //For each paragraph: where it starts, and the last point at or before that where the lexer
+    //was between tokens (its offset, the number of tokens before it, and the lexer's state there)
+    int lines = 0;
+    int[] lineStarts = new int[16];
+    int[] checkpointOffsets = new int[16];
+    int[] checkpointTokens = new int[16];
+    LexerState[] checkpointStates = new LexerState[16];
+
+    //The range of text lexed by the last call to relex(), and the number of tokens it found
+    int lexedStart;
+    int lexedEnd;
+    int lexedTokens;
+    //The range of text whose tokens the last call to relex() changed. Re-lexed tokens the same as
+    //the ones they replaced are left out at either end, so their styles needn't be reapplied.
+    int changedStart;
+    int changedEnd;
+
+    //The new tokens are lexed into here first, so they can be compared against the old ones
+    private TokenList scratch;
+
+    //The last token the lexer passed to accept()
+    private int tokenType;
+    private int tokenStart;
+    private int tokenEnd;
+
+    TokenList() {
+        clear();
+    }
+
+    void clear() {
+        size = 0;
+        lines = 0;
+        //The first paragraph always resumes from the start of the document
+        addLine(0, 0, 0, null);
+    }
+
+    /**
+     * Re-lexes the given text after the changes in damage were made to it. Lexing resumes at the
+     * nearest paragraph checkpoint before the changes and stops at the first checkpoint after them
+     * where the tokens and the lexer state match the previous pass again.
+     *
+     * Once more than maxLength characters have been lexed, or System.nanoTime() has passed
+     * deadline, lexing also stops at the next paragraph checkpoint, and damage is left holding
+     * what still has to be re-lexed. Otherwise it's cleared.
+     *
+     * If whole is set, lexing starts at the start of the text instead, and goes on to the end of
+     * it rather than stopping once it catches up, as if nothing had been lexed before.
+     *
+     * Returns false, leaving the list and damage as they were, if cancelled (which may be null)
+     * returned true.
+     */
+    boolean relex(Lexer lexer, CharSequence text, Damage damage, int maxLength, long deadline,
+            boolean whole, BooleanSupplier cancelled) {
+        int damageStart = damage.start;
+        int damageEnd = damage.end;
+        int delta = damage.delta;
+
+        //Find the first token that examined any of the changed text, then back up to the
+        //checkpoint of the paragraph it starts in
+        int first = firstReaching(damageStart);
+        int from = first < size ? Math.min(starts[first], damageStart) : damageStart;
+        int line = whole ? 0 : lastLineAtOrBefore(from);
+        //Lexers that can't save their state can only resume from the start of the document
+        while (line > 0 && checkpointStates[line] == null)
+            --line;
+        int restart = checkpointOffsets[line];
+        int restartIndex = checkpointTokens[line];
+        LexerState state = checkpointStates[line];
+
+        if (scratch == null)
+            scratch = new TokenList();
+        TokenList added = scratch;
+        added.size = 0;
+        added.lines = 0;
+
+        int prevReach = restartIndex > 0 ? reach[restartIndex - 1] : 0;
+        int pos = restart;
+        int nextLine = nextLineStart(text, lineStarts[line]);
+        int old = restartIndex;
+        int oldLine = line + 1;
+        int lastMatched = -1;
+        int matched = 0;
+        //Where the run of tokens matching the previous pass that lexing ended with starts
+        int matchedFrom = -1;
+        boolean synced = false;
+        int stopLine = -1;
+        boolean atEnd = false;
+        lexer.setText(text, restart, text.length(), state);
+        while (!synced) {
+            boolean found = lexer.nextToken(added);
+            atEnd = !found;
+            int tokType = added.tokenType;
+            int tokStart = added.tokenStart;
+            int tokEnd = added.tokenEnd;
+            int nextPos = found ? lexer.getPosition() : Integer.MAX_VALUE;
+            if (nextPos < 0)
+                nextPos = tokEnd;
+
+            //Every paragraph starting before the lexer's next position resumes from the current one
+            while (nextLine >= 0 && nextLine < nextPos) {
+                //Past the change, check whether we've caught up with the previous pass
+                if (nextLine >= damageEnd && matched >= SYNC_TOKENS && state != null && !whole) {
+                    int oldStart = nextLine - delta;
+                    while (oldLine < lines && lineStarts[oldLine] < oldStart)
+                        ++oldLine;
+                    if (oldLine < lines && lineStarts[oldLine] == oldStart
+                            && checkpointOffsets[oldLine] == pos - delta
+                            && checkpointTokens[oldLine] == lastMatched + 1
+                            && state.equals(checkpointStates[oldLine])) {
+                        synced = true;
+                        break;
+                    }
+                }
+                added.addLine(nextLine, pos, restartIndex + added.size, state);
+                //Past the limit or the deadline, leave the rest for a later call. It may resume
+                //further back than here, so only stop once past where this call's work started, or
+                //it would never end.
+                if (pos > damageStart && state != null && (nextLine - restart >= maxLength
+                        || deadline != NO_DEADLINE && System.nanoTime() - deadline >= 0)) {
+                    stopLine = nextLine;
+                    break;
+                }
+                nextLine = nextLineStart(text, nextLine);
+            }
+            if (synced || stopLine >= 0 || !found)
+                break;
+
+            int scanEnd = lexer.getScanEnd();
+            prevReach = Math.max(prevReach, scanEnd);
+            added.add(tokType, tokStart, tokEnd, scanEnd, prevReach);
+            if (cancelled != null && added.size % CANCEL_CHECK_INTERVAL == 0 && cancelled.getAsBoolean())
+                return false;
+
+            //Compare the tokens after the change against the previous pass
+            if (tokStart >= damageEnd) {
+                int oldStart = tokStart - delta;
+                while (old < size && starts[old] < oldStart)
+                    ++old;
+                if (old < size && starts[old] == oldStart && ends[old] == tokEnd - delta
+                        && types[old] == tokType) {
+                    lastMatched = old++;
+                    if (tokType != Token.OTHER)
+                        ++matched;
+                    if (matchedFrom < 0)
+                        matchedFrom = tokStart;
+                } else {
+                    lastMatched = -1;
+                    matched = 0;
+                    matchedFrom = -1;
+                }
+            }
+            pos = nextPos;
+            state = lexer.saveState();
+        }
+
+        //Find the first new token that differs from the old one at the same place before the changes
+        int same = 0;
+        int sameEnd = Math.min(added.size, size - restartIndex);
+        while (same < sameEnd && added.ends[same] <= damageStart && added.types[same] == types[restartIndex + same]
+                && added.starts[same] == starts[restartIndex + same] && added.ends[same] == ends[restartIndex + same])
+            ++same;
+        //If every new token matched, the change starts where they end. Not where lexing got to, as
+        //an action can read past its token (a doc comment tag reads the character after it) and
+        //the text up to pos may still need restyling.
+        if (same < added.size)
+            changedStart = added.starts[same];
+        else
+            changedStart = same > 0 ? added.ends[same - 1] : restart;
+        //Lexing that went on to the end only changed the tokens up to the run it ended with if
+        //that run matched every old token left
+        changedEnd = synced || stopLine >= 0 ? pos : text.length();
+        if (matchedFrom >= 0 && (synced || atEnd && old == size))
+            changedEnd = matchedFrom;
+        changedEnd = Math.max(changedEnd, changedStart);
+        lexedStart = restart;
+        lexedEnd = synced || stopLine >= 0 ? pos : text.length();
+        lexedTokens = added.size;
+
+        //Replace the old tokens from restartIndex up to the first one we caught up with. When
+        //stopping early, keep the old tokens past the changes, as the next call will check them.
+        int tail = size;
+        int tailLine = lines;
+        int tailStart = Math.max(pos, damageEnd);
+        if (synced) {
+            tail = checkpointTokens[oldLine];
+            tailLine = oldLine;
+        } else if (stopLine >= 0) {
+            tail = firstStartingAtOrAfter(tailStart - delta);
+            tailLine = lastLineAtOrBefore(Math.max(stopLine, damageEnd) - delta) + 1;
+        }
+        int tailCount = size - tail;
+        int dest = restartIndex + added.size;
+        ensureCapacity(dest + tailCount);
+        moveTokens(this, tail, dest, tailCount);
+        moveTokens(added, 0, restartIndex, added.size);
+        size = dest + tailCount;
+
+        //Shift the tokens after the change, and bring their reach up to date
+        for (int i = dest; i < size; ++i) {
+            starts[i] += delta;
+            ends[i] += delta;
+            scanEnds[i] += delta;
+            prevReach = Math.max(prevReach, scanEnds[i]);
+            reach[i] = prevReach;
+        }
+
+        //Do the same for the paragraphs after the one lexing resumed in
+        int tailLines = lines - tailLine;
+        int destLine = line + 1 + added.lines;
+        ensureLineCapacity(destLine + tailLines);
+        moveLines(this, tailLine, destLine, tailLines);
+        moveLines(added, 0, line + 1, added.lines);
+        lines = destLine + tailLines;
+        for (int i = destLine; i < lines; ++i) {
+            //A checkpoint in text left without tokens can't be resumed from or caught up with
+            if (checkpointTokens[i] < tail) {
+                checkpointOffsets[i] = tailStart - delta;
+                checkpointTokens[i] = tail;
+                checkpointStates[i] = null;
+            }
+            lineStarts[i] += delta;
+            checkpointOffsets[i] += delta;
+            checkpointTokens[i] += dest - tail;
+        }
+
+        damage.clear();
+        //The text between here and the end of the changes has no tokens yet. When lexing the
+        //whole text, nothing after here has been lexed yet either.
+        if (stopLine >= 0)
+            damage.include(pos, whole ? text.length() : tailStart);
+        return true;
+    }
+
+    /**
+     * Replaces the list with the tokens of [from, to), lexed on their own starting in the lexer's
+     * initial state. Lexers that can't resume lex from the start of the text instead, and only
+     * the tokens ending after from are kept. The paragraph checkpoints are left empty.
+     */
+    void lexRange(Lexer lexer, CharSequence text, int from, int to) {
+        clear();
+        int prevReach = 0;
+        lexer.setText(text, from, to, null);
+        while (lexer.nextToken(this)) {
+            if (tokenEnd <= from)
+                continue;
+            int scanEnd = lexer.getScanEnd();
+            prevReach = Math.max(prevReach, scanEnd);
+            add(tokenType, tokenStart, tokenEnd, scanEnd, prevReach);
+        }
+    }
+
+    @Override
+    public void accept(int tokenType, int start, int end) {
+        this.tokenType = tokenType;
+        tokenStart = start;
+        tokenEnd = end;
+    }
+
+    private void add(int type, int start, int end, int scanEnd, int tokenReach) {
+        ensureCapacity(size + 1);
+        types[size] = type;
+        starts[size] = start;
+        ends[size] = end;
+        scanEnds[size] = scanEnd;
+        reach[size] = tokenReach;
+        ++size;
+    }
+
+    private void addLine(int lineStart, int offset, int tokenIndex, LexerState state) {
+        ensureLineCapacity(lines + 1);
+        lineStarts[lines] = lineStart;
+        checkpointOffsets[lines] = offset;
+        checkpointTokens[lines] = tokenIndex;
+        checkpointStates[lines] = state;
+        ++lines;
+    }
+
+    private static int nextLineStart(CharSequence text, int from) {
+        for (int i = from; i < text.length(); ++i) {
+            if (text.charAt(i) == '\n')
+                return i + 1;
+        }
+        return -1;
+    }
+
+    //Returns the index of the first token ending after the given offset
+    int firstEndingAfter(int offset) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (ends[mid] > offset)
+                high = mid;
+            else
+                low = mid + 1;
+        }
+        return low;
+    }
+
+    //Returns the index of the first token starting at or after the given offset
+    private int firstStartingAtOrAfter(int offset) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (starts[mid] >= offset)
+                high = mid;
+            else
+                low = mid + 1;
+        }
+        return low;
+    }
+
+    //Returns the index of the first token whose lexing examined the given offset or beyond
+    private int firstReaching(int offset) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (reach[mid] > offset)
+                high = mid;
+            else
+                low = mid + 1;
+        }
+        return low;
+    }
+
+    //Returns the index of the last paragraph starting at or before the given offset
+    private int lastLineAtOrBefore(int offset) {
+        int low = 0;
+        int high = lines;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (lineStarts[mid] > offset)
+                high = mid;
+            else
+                low = mid + 1;
+        }
+        return low - 1;
+    }
+
+    private void moveTokens(TokenList from, int fromIndex, int toIndex, int count) {
+        System.arraycopy(from.types, fromIndex, types, toIndex, count);
+        System.arraycopy(from.starts, fromIndex, starts, toIndex, count);
+        System.arraycopy(from.ends, fromIndex, ends, toIndex, count);
+        System.arraycopy(from.scanEnds, fromIndex, scanEnds, toIndex, count);
+        System.arraycopy(from.reach, fromIndex, reach, toIndex, count);
+    }
+
+    private void moveLines(TokenList from, int fromIndex, int toIndex, int count) {
+        System.arraycopy(from.lineStarts, fromIndex, lineStarts, toIndex, count);
+        System.arraycopy(from.checkpointOffsets, fromIndex, checkpointOffsets, toIndex, count);
+        System.arraycopy(from.checkpointTokens, fromIndex, checkpointTokens, toIndex, count);
+        System.arraycopy(from.checkpointStates, fromIndex, checkpointStates, toIndex, count);
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= types.length)
+            return;
+        int newCapacity = Math.max(capacity, types.length * 2);
+        types = Arrays.copyOf(types, newCapacity);
+        starts = Arrays.copyOf(starts, newCapacity);
+        ends = Arrays.copyOf(ends, newCapacity);
+        scanEnds = Arrays.copyOf(scanEnds, newCapacity);
+        reach = Arrays.copyOf(reach, newCapacity);
+    }
+
+    private void ensureLineCapacity(int capacity) {
+        if (capacity <= lineStarts.length)
+            return;
+        int newCapacity = Math.max(capacity, lineStarts.length * 2);
+        lineStarts = Arrays.copyOf(lineStarts, newCapacity);
+        checkpointOffsets = Arrays.copyOf(checkpointOffsets, newCapacity);
+        checkpointTokens = Arrays.copyOf(checkpointTokens, newCapacity);
+        checkpointStates = Arrays.copyOf(checkpointStates, newCapacity);
+    }
+
+}
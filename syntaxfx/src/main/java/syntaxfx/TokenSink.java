@@ -0,0 +1,8 @@
+package syntaxfx;
+
+/**
+ * Receives tokens from Lexer.nextToken() without a Token object being created for each one.
+ */
+public interface TokenSink {
+    void accept(int tokenType, int start, int end);
+}
@@ -1,13 +1,16 @@
 package syntaxfx.lexers;
 
-import syntaxfx.Lexer;
+import syntaxfx.DfaLexer;
+import syntaxfx.LexerSpec;
+import syntaxfx.LexerTables;
 import syntaxfx.Token;
 
-import java.util.Stack;
-
 /**
  * The CLexer class represents a lexer for the C programming language.
  * 
+ * The LEX-MAIN section is AnnoFlex output rewritten by convert_lexer.py to run on DfaLexer,
+ * so regenerate it with gen_lexers.sh rather than with AnnoFlex alone.
+ * 
  * @option functionality = all- setString+ getMatchStart+ getMatchEnd+ lexicalState+
  * @option visibility = all- stringMethods+ scanMethods+
  * @option internal = setString+
@@ -22,43 +25,34 @@ import java.util.Stack;
  * @macro BinaryInteger  = 0 [bB] [01]* 
  * @macro FloatNumber    = (([0-9]+\.[0-9]*) | (\.?[0-9]+)) ([eE][+-]?[0-9]+)?
  */
-public class CLexer extends Lexer {
-    Stack<Integer> stateStack = new Stack<>();
-    int stateStart = 0;
+public class CLexer extends DfaLexer {
+    public static final LexerSpec SPEC = CLexer::new;
 
-    public void setString(String string) {
-        setStringInternal(string);
-        stateStack.clear();
-        stateStack.push(LEXICAL_STATE_INITIAL);
+    public CLexer() {
+        super(Tables.TABLES, LEXICAL_STATE_INITIAL);
     }
 
-    private void enterLexicalState(int state) {
-        setLexicalState(state);
-        stateStack.push(state);
-    }
-
-    private void leaveLexicalState() {
-        stateStack.pop();
-        setLexicalState(stateStack.peek());
-    }
+    //How far createIdentifer looks past whitespace for what comes before or after an identifier,
+    //so that long runs of whitespace don't make lexing quadratic
+    private static final int MAX_LOOKAROUND = 128;
 
     //%%LEX-CONDITION-START%%COMMENT%%
     
     /** @expr \*\/ */
-    Token endMultilineComment() {
+    int endMultilineComment() {
         leaveLexicalState();
-        return new Token(Token.COMMENT, stateStart, matchEnd);
+        return token(Token.COMMENT, stateStart, matchEnd);
     }
 
     /** @expr [^] */
-    void commentText() {}
+    void commentText() { skipTo("*/"); }
 
     //%%LEX-CONDITION-END%%
     
     //%%LEX-CONDITION-START%%INITIAL%%
 
     /** @expr \/\/[^\r\n]* */
-    Token createLineComment() { return new Token(Token.COMMENT, matchStart, matchEnd); }
+    int createLineComment() { return token(Token.COMMENT, matchStart, matchEnd); }
 
     /** @expr \/\* */
     void startMultilineComment() {
@@ -67,65 +61,66 @@ public class CLexer extends Lexer {
     }
 
     /** @expr #[^\r\n]* */
-    Token createDirective() { return new Token(Token.PREPROCESSOR, matchStart, matchEnd); }
+    int createDirective() { return token(Token.PREPROCESSOR, matchStart, matchEnd); }
 
     /** @expr \"(\\[^\r\n]|[^\\\"])*\" */
-    Token createString() { return new Token(Token.STRING, matchStart, matchEnd); }
+    int createString() { return token(Token.STRING, matchStart, matchEnd); }
 
     /** @expr \'(\\[^\r\n]|[^\\\'])*\' */
-    Token createChar() { return new Token(Token.STRING, matchStart, matchEnd); }
+    int createChar() { return token(Token.STRING, matchStart, matchEnd); }
      
     /** @expr auto|const|double|float|int|short|struct|unsigned|long|signed|void|enum|register|typedef|volatile|char|extern|static|union */
-    Token createKeyword() { return new Token(Token.KEYWORD, matchStart, matchEnd); }
+    int createKeyword() { return token(Token.KEYWORD, matchStart, matchEnd); }
 
     /** @expr break|continue|else|for|switch|case|default|goto|sizeof|do|if|return|while */
-    Token createKeyword2() { return new Token(Token.KEYWORD2, matchStart, matchEnd); }
+    int createKeyword2() { return token(Token.KEYWORD2, matchStart, matchEnd); }
 
     /** @expr \(|\)|\{|\}|\[|\]|\;|\.|\=|\>|\<|\!|\~|\?|\:|\||\&|\^|\%|\+|\-|\*|\/ */
-    Token createOperator() { return new Token(Token.OPERATOR, matchStart, matchEnd); }
+    int createOperator() { return token(Token.OPERATOR, matchStart, matchEnd); }
 
     /** @expr {DecimalInteger}[Ll]? | {HexInteger}[Ll]? | {OctalInteger}[Ll]? | {BinaryInteger}[Ll]? */
-    Token createInteger() { return new Token(Token.NUMBER, matchStart, matchEnd); }
+    int createInteger() { return token(Token.NUMBER, matchStart, matchEnd); }
 
     /** @expr {FloatNumber}[fF]? | {FloatNumber}[dD] */
-    Token createFloat() { return new Token(Token.NUMBER, matchStart, matchEnd); }
+    int createFloat() { return token(Token.NUMBER, matchStart, matchEnd); }
 
     /** @expr \@\p{JavaIdentifierPart}* */
-    Token createAnnotation() { return new Token(Token.DOC_COMMENT_TAG, matchStart, matchEnd); }
+    int createAnnotation() { return token(Token.DOC_COMMENT_TAG, matchStart, matchEnd); }
 
     /** @expr \p{JavaIdentifierStart}\p{JavaIdentifierPart}* */
-    Token createIdentifer() {
+    int createIdentifer() {
+        //Find the next character that isn't whitespace, and remember how far we looked ahead
+        int limit = Math.min(regionEnd, matchEnd + MAX_LOOKAROUND);
+        int next = matchEnd;
+        while (next < limit && Character.isWhitespace(this.string.charAt(next)))
+            ++next;
+        scanEnd = Math.max(scanEnd, next + 1);
         //If the next character that isn't whitespace is a parentheses, it's a function
-        for (int i = matchEnd; i < this.string.length(); ++i) {
-            if (Character.isWhitespace(this.string.charAt(i)))
-                continue;
-            else if (this.string.charAt(i) == '(')
-                return new Token(Token.FUNCTION, matchStart, matchEnd);
-            else
-                break;
-        }
+        if (next < limit && this.string.charAt(next) == '(')
+            return token(Token.FUNCTION, matchStart, matchEnd);
         //If the previous character that wasn't whitespace was a "." or a "->", it's a member variable
-        for (int i = matchStart - 1; i > 0; --i) {
+        int stop = Math.max(0, matchStart - MAX_LOOKAROUND);
+        for (int i = matchStart - 1; i > stop; --i) {
             if (Character.isWhitespace(this.string.charAt(i)))
                 continue;
             else if (this.string.charAt(i) == '.')
-                return new Token(Token.MEMBER_VAR, matchStart, matchEnd);
+                return token(Token.MEMBER_VAR, matchStart, matchEnd);
             else if (i > 0 && this.string.charAt(i) == '>' && this.string.charAt(i - 1) == '-')
-                return new Token(Token.MEMBER_VAR, matchStart, matchEnd);
+                return token(Token.MEMBER_VAR, matchStart, matchEnd);
             else
                 break;
         }
-        return new Token(Token.IDENTIFIER, matchStart, matchEnd);
+        return token(Token.IDENTIFIER, matchStart, matchEnd);
     }
     
     /** @expr [^] */
-    Token other() { return new Token(Token.OTHER, matchStart, matchEnd); }
+    int other() { return token(Token.OTHER, matchStart, matchEnd); }
 
     //%%LEX-CONDITION-END%%
 
     //%%LEX-MAIN-START%%
     
-    private static final byte[] CHARACTER_MAP = createCharacterMap(
+    private static final String CHARACTER_MAP_DATA =
     "\34\t\4\1\1\1\4\2\1\1\34\16\4\5\23\1\3\1\7\1\37\1\32\1\30\1" +
     "\2\1\b\1\t\1\5\1\35\1\4\1\36\1\17\1\6\1\101\1\102\1\74\6\63\2" +
     "\26\1\16\1\22\1\20\1\21\1\25\1\33\1\62\1\64\1\62\1\73\1\71\1" +
@@ -216,9 +211,9 @@ public class CLexer extends Lexer {
     "\4\22\37\100\4\2\37\66\4\50\37\r\4\3\34\20\4\20\34\7\4\f\37\2" +
     "\4\30\37\3\4\31\37\1\4\6\37\5\4\1\37\207\4\2\34\1\4\4\37\1\4\13" +
     "\34\n\4\7\37\32\4\4\37\1\4\1\37\32\4\13\37\131\4\3\37\6\4\2" +
-    "\37\6\4\2\37\6\4\2\37\3\4\3\37\2\4\3\37\2\4\22\34\3\4\4");
+    "\37\6\4\2\37\6\4\2\37\3\4\3\37\2\4\3\37\2\4\22\34\3\4\4";
     
-    private static final short[][] TRANSITION_TABLE = createTransitionTable(
+    private static final String TRANSITION_TABLE_DATA =
     "\3\5\4\1\3\75\0\103\0\103\0\6\2\1\0\74\201\1\0\1\201\101\6\1\0\1\6\101" +
     "\0\103\b\1\0\1\b\101\0\103\0\103\0\34\21\1\0\2\21\44\0\34\21\1\0\2\21\44" +
     "\0\103\0\103\0\103\0\34\20\1\0\2\20\44\0\34\21\1\0\2\21\44\0\103\22\2" +
@@ -276,176 +271,48 @@ public class CLexer extends Lexer {
     "\0\2\21\30\165\1\21\13\0\34\21\1\0\2\21\3\170\1\21\40\0\34\21\1\0\2\21\b" +
     "\165\1\21\33\0\34\21\1\0\2\21\3\172\1\21\40\0\34\21\1\0\2\21\4\165\1" +
     "\21\33\f\1\21\3\177\1\176\1\n\1\176\100\177\1\176\1\n\1\176\100\176\1" +
-    "\0\1\176\101\5\1\201\2\t\1\201\77\5\1\201\2\t\1\201\77\0\5\7\1\6\1\0\74");
+    "\0\1\176\101\5\1\201\2\t\1\201\77\5\1\201\2\t\1\201\77\0\5\7\1\6\1\0\74";
     
-    private static final byte[] ACTION_MAP = createActionMap(
+    private static final String ACTION_MAP_DATA =
     "\0\1\1\1\2\2\0\1\3\1\4\1\5\1\6\1\7\1\b\1\t\1\n\1\13\1" +
     "\f\1\r\1\16\1\17\1\0\1\n\1\f\1\0\1\13\1\f\1\13\1\f\1\0\1" +
-    "\13\3\16\73\t\1\16\"\17\1\0\2\17\1\0\1\n\1");
+    "\13\3\16\73\t\1\16\"\17\1\0\2\17\1\0\1\n\1";
+    
+    private static final String[] ACTION_NAMES = {
+    "endMultilineComment", "commentText", "createLineComment", "startMultilineComment",
+    "createDirective", "createString", "createChar", "createKeyword", "createKeyword2",
+    "createOperator", "createInteger", "createFloat", "createAnnotation", "createIdentifer", "other"
+    };
     
     private static final int LEXICAL_STATE_COMMENT = 0;
     private static final int LEXICAL_STATE_INITIAL = 1;
     
-    private String string = "";
-    private int regionEnd;
-    private int dot;
-    private int lexicalState = LEXICAL_STATE_INITIAL;
-    private int matchStart;
-    private int matchEnd;
-    private int startState = 18;
-    
-    private static byte[] createCharacterMap(String characterMapData) {
-        byte[] characterMap = new byte[65536];
-        int length = characterMapData.length();
-        int i = 0;
-        int j = 0;
-        
-        while (i < length) {
-            byte curValue = (byte)characterMapData.charAt(i++);
-            
-            for (int x=characterMapData.charAt(i++);x>0;x--) {
-                characterMap[j++] = curValue;
-            }
-        }
-        
-        return characterMap;
-    }
-    
-    private static short[][] createTransitionTable(String transitionTableData) {
-        short[][] transitionTable = new short[130][67];
-        int length = transitionTableData.length();
-        int i = 0;
-        int j = 0;
-        int k = 0;
-        
-        while (i < length) {
-            short curValue = (short)((short)transitionTableData.charAt(i++) - 1);
-            
-            for (int x=transitionTableData.charAt(i++);x>0;x--) {
-                transitionTable[j][k++] = curValue;
-            }
-            
-            if (k == 67) {
-                k = 0;
-                j++;
-            }
-        }
-        
-        return transitionTable;
-    }
-    
-    private static byte[] createActionMap(String actionMapData) {
-        byte[] actionMap = new byte[130];
-        int length = actionMapData.length();
-        int i = 0;
-        int j = 0;
-        
-        while (i < length) {
-            byte curValue = (byte)((short)actionMapData.charAt(i++) - 1);
-            
-            for (int x=actionMapData.charAt(i++);x>0;x--) {
-                actionMap[j++] = curValue;
-            }
-        }
-        
-        return actionMap;
-    }
-    
-    public void setStringInternal(String string) {
-        this.string = string != null ? string : "";
-        
-        regionEnd = this.string.length();
-        
-        dot = 0;
-        lexicalState = LEXICAL_STATE_INITIAL;
-        
-        matchStart = 0;
-        matchEnd = 0;
-        
-        startState = 18;
-    }
-    
-    private void setLexicalState(int lexicalState) {
-        switch(lexicalState) {
-        case LEXICAL_STATE_COMMENT: startState = 0; break;
-        case LEXICAL_STATE_INITIAL: startState = 18; break;
-        default:
-            throw new IllegalArgumentException("invalid lexical state");
-        }
-        
-        this.lexicalState = lexicalState;
-    }
-    
-    private int getMatchStart() {
-        return matchStart;
+    //Decoded when the first lexer is created rather than when the class is loaded
+    private static final class Tables {
+        static final LexerTables TABLES = LexerTables.decode(130, 67, new int[] { 0, 18 },
+                CHARACTER_MAP_DATA, TRANSITION_TABLE_DATA, ACTION_MAP_DATA, ACTION_NAMES);
     }
     
-    private int getMatchEnd() {
-        return matchEnd;
-    }
-    
-    public Token getNextToken() {
-        while (dot < regionEnd) {
-            
-            // find longest match
-            int curState = startState;
-            int iterator = dot;
-            int matchState = -1;
-            int matchPosition = 0;
-            
-            do {
-                curState = TRANSITION_TABLE[curState][CHARACTER_MAP[string
-                        .charAt(iterator)]];
-                
-                if (curState == -1) {
-                    break;
-                }
-                
-                if (ACTION_MAP[curState] != -1) {
-                    matchState = curState;
-                    matchPosition = iterator;
-                }
-            } while (++iterator < regionEnd);
-            
-            // match found, perform action
-            if (matchState != -1) {
-                int endPosition = matchPosition + 1;
-                
-                matchStart = dot;
-                matchEnd = endPosition;
-                dot = endPosition;
-                
-                switch(ACTION_MAP[matchState]) {
-                case 0: return endMultilineComment();
-                case 1: commentText(); continue;
-                case 2: return createLineComment();
-                case 3: startMultilineComment(); continue;
-                case 4: return createDirective();
-                case 5: return createString();
-                case 6: return createChar();
-                case 7: return createKeyword();
-                case 8: return createKeyword2();
-                case 9: return createOperator();
-                case 10: return createInteger();
-                case 11: return createFloat();
-                case 12: return createAnnotation();
-                case 13: return createIdentifer();
-                case 14: return other();
-                }
-            }
-            
-            // no match found, set match values and report as error
-            matchStart = dot;
-            matchEnd = dot;
-            
-            throw new IllegalStateException("invalid input");
+    protected int action(int action) {
+        switch(action) {
+        case 0: return endMultilineComment();
+        case 1: commentText(); return NO_TOKEN;
+        case 2: return createLineComment();
+        case 3: startMultilineComment(); return NO_TOKEN;
+        case 4: return createDirective();
+        case 5: return createString();
+        case 6: return createChar();
+        case 7: return createKeyword();
+        case 8: return createKeyword2();
+        case 9: return createOperator();
+        case 10: return createInteger();
+        case 11: return createFloat();
+        case 12: return createAnnotation();
+        case 13: return createIdentifer();
+        case 14: return other();
         }
         
-        // no match found, set match values and return to caller
-        matchStart = dot;
-        matchEnd = dot;
-        
-        return null;
+        throw new IllegalArgumentException("invalid action");
     }
     
     //%%LEX-MAIN-END%%
@@ -1,13 +1,16 @@
 package syntaxfx.lexers;
 
-import syntaxfx.Lexer;
+import syntaxfx.DfaLexer;
+import syntaxfx.LexerSpec;
+import syntaxfx.LexerTables;
 import syntaxfx.Token;
 
-import java.util.Stack;
-
 /**
  * The CppLexer class represents a lexer for the C++ programming language.
  * 
+ * The LEX-MAIN section is AnnoFlex output rewritten by convert_lexer.py to run on DfaLexer,
+ * so regenerate it with gen_lexers.sh rather than with AnnoFlex alone.
+ * 
  * @option functionality = all- setString+ getMatchStart+ getMatchEnd+ lexicalState+
  * @option visibility = all- stringMethods+ scanMethods+
  * @option internal = setString+
@@ -22,43 +25,34 @@ import java.util.Stack;
  * @macro BinaryInteger  = 0 [bB] [01]* 
  * @macro FloatNumber    = (([0-9]+\.[0-9]*) | (\.?[0-9]+)) ([eE][+-]?[0-9]+)?
  */
-public class CppLexer extends Lexer {
-    Stack<Integer> stateStack = new Stack<>();
-    int stateStart = 0;
-
-    public void setString(String string) {
-        setStringInternal(string);
-        stateStack.clear();
-        stateStack.push(LEXICAL_STATE_INITIAL);
-    }
+public class CppLexer extends DfaLexer {
+    public static final LexerSpec SPEC = CppLexer::new;
 
-    private void enterLexicalState(int state) {
-        setLexicalState(state);
-        stateStack.push(state);
+    public CppLexer() {
+        super(Tables.TABLES, LEXICAL_STATE_INITIAL);
     }
 
-    private void leaveLexicalState() {
-        stateStack.pop();
-        setLexicalState(stateStack.peek());
-    }
+    //How far createIdentifer looks past whitespace for what comes before or after an identifier,
+    //so that long runs of whitespace don't make lexing quadratic
+    private static final int MAX_LOOKAROUND = 128;
 
     //%%LEX-CONDITION-START%%COMMENT%%
     
     /** @expr \*\/ */
-    Token endMultilineComment() {
+    int endMultilineComment() {
         leaveLexicalState();
-        return new Token(Token.COMMENT, stateStart, matchEnd);
+        return token(Token.COMMENT, stateStart, matchEnd);
     }
 
     /** @expr [^] */
-    void commentText() {}
+    void commentText() { skipTo("*/"); }
 
     //%%LEX-CONDITION-END%%
     
     //%%LEX-CONDITION-START%%INITIAL%%
 
     /** @expr \/\/[^\r\n]* */
-    Token createLineComment() { return new Token(Token.COMMENT, matchStart, matchEnd); }
+    int createLineComment() { return token(Token.COMMENT, matchStart, matchEnd); }
 
     /** @expr \/\* */
     void startMultilineComment() {
@@ -67,77 +61,73 @@ public class CppLexer extends Lexer {
     }
 
     /** @expr #[^\r\n]* */
-    Token createDirective() { return new Token(Token.PREPROCESSOR, matchStart, matchEnd); }
+    int createDirective() { return token(Token.PREPROCESSOR, matchStart, matchEnd); }
 
     /** @expr \"(\\[^\r\n]|[^\\\"])*\" */
-    Token createString() { return new Token(Token.STRING, matchStart, matchEnd); }
+    int createString() { return token(Token.STRING, matchStart, matchEnd); }
 
     /** @expr \'(\\[^\r\n]|[^\\\'])*\' */
-    Token createChar() { return new Token(Token.STRING, matchStart, matchEnd); }
+    int createChar() { return token(Token.STRING, matchStart, matchEnd); }
      
     /** @expr auto|bool|const|class|double|explicit|template|float|friend|inline|mutable|namespace|operator|typename|virtual|private|wchar_t|protected|public|int|short|struct|unsigned|long|signed|void|enum|register|typedef|volatile|char|extern|static|union */
-    Token createKeyword() { return new Token(Token.KEYWORD, matchStart, matchEnd); }
+    int createKeyword() { return token(Token.KEYWORD, matchStart, matchEnd); }
 
     /** @expr asm|break|catch|const_cast|continue|delete|dynamic_cast|else|false|true|this|typeid|reinterpret_cast|static_cast|using|throw|try|for|new|switch|case|default|goto|sizeof|do|if|return|while */
-    Token createKeyword2() { return new Token(Token.KEYWORD2, matchStart, matchEnd); }
+    int createKeyword2() { return token(Token.KEYWORD2, matchStart, matchEnd); }
 
     /** @expr \(|\)|\{|\}|\[|\]|\;|\.|\=|\>|\<|\!|\~|\?|\:|\||\&|\^|\%|\+|\-|\*|\/ */
-    Token createOperator() { return new Token(Token.OPERATOR, matchStart, matchEnd); }
+    int createOperator() { return token(Token.OPERATOR, matchStart, matchEnd); }
 
     /** @expr {DecimalInteger}[Ll]? | {HexInteger}[Ll]? | {OctalInteger}[Ll]? | {BinaryInteger}[Ll]? */
-    Token createInteger() { return new Token(Token.NUMBER, matchStart, matchEnd); }
+    int createInteger() { return token(Token.NUMBER, matchStart, matchEnd); }
 
     /** @expr {FloatNumber}[fF]? | {FloatNumber}[dD] */
-    Token createFloat() { return new Token(Token.NUMBER, matchStart, matchEnd); }
+    int createFloat() { return token(Token.NUMBER, matchStart, matchEnd); }
 
     /** @expr \@\p{JavaIdentifierPart}* */
-    Token createAnnotation() { return new Token(Token.DOC_COMMENT_TAG, matchStart, matchEnd); }
+    int createAnnotation() { return token(Token.DOC_COMMENT_TAG, matchStart, matchEnd); }
 
     /** @expr \p{JavaIdentifierStart}\p{JavaIdentifierPart}* */
-    Token createIdentifer() {
+    int createIdentifer() {
+        //Find the next character that isn't whitespace, and remember how far we looked ahead
+        int limit = Math.min(regionEnd, matchEnd + MAX_LOOKAROUND);
+        int next = matchEnd;
+        while (next < limit && Character.isWhitespace(this.string.charAt(next)))
+            ++next;
+        scanEnd = Math.max(scanEnd, next + 1);
         //If the next character that isn't whitespace is a parentheses, it's a function
-        for (int i = matchEnd; i < this.string.length(); ++i) {
-            if (Character.isWhitespace(this.string.charAt(i)))
-                continue;
-            else if (this.string.charAt(i) == '(')
-                return new Token(Token.FUNCTION, matchStart, matchEnd);
-            else
-                break;
-        }
+        if (next < limit && this.string.charAt(next) == '(')
+            return token(Token.FUNCTION, matchStart, matchEnd);
         //If the previous character that wasn't whitespace was a "." or a "->", it's a member variable
-        for (int i = matchStart - 1; i >= 0; --i) {
+        int stop = Math.max(0, matchStart - MAX_LOOKAROUND);
+        for (int i = matchStart - 1; i >= stop; --i) {
             if (Character.isWhitespace(this.string.charAt(i)))
                 continue;
             else if (this.string.charAt(i) == '.')
-                return new Token(Token.MEMBER_VAR, matchStart, matchEnd);
+                return token(Token.MEMBER_VAR, matchStart, matchEnd);
             else if (i > 0 && this.string.charAt(i) == '>' && this.string.charAt(i - 1) == '-')
-                return new Token(Token.MEMBER_VAR, matchStart, matchEnd);
+                return token(Token.MEMBER_VAR, matchStart, matchEnd);
             //If the previous characters were a "::", it's a namespace member
             else if (i > 0 && this.string.charAt(i) == ':' && this.string.charAt(i - 1) == ':')
-                return new Token(Token.MEMBER_VAR, matchStart, matchEnd);
+                return token(Token.MEMBER_VAR, matchStart, matchEnd);
             else
                 break;
         }
         //If the next characters that aren't whitespace are a "::", then it's a namespace
-        for (int i = matchEnd; i < this.string.length(); ++i) {
-            if (Character.isWhitespace(this.string.charAt(i)))
-                continue;
-            else if (i < this.string.length() - 1 && this.string.charAt(i) == ':' && this.string.charAt(i + 1) == ':')
-                return new Token(Token.NAMESPACE, matchStart, matchEnd);
-            else
-                break;
-        }
-        return new Token(Token.IDENTIFIER, matchStart, matchEnd);
+        scanEnd = Math.max(scanEnd, next + 2);
+        if (next < limit && next + 1 < regionEnd && this.string.charAt(next) == ':' && this.string.charAt(next + 1) == ':')
+            return token(Token.NAMESPACE, matchStart, matchEnd);
+        return token(Token.IDENTIFIER, matchStart, matchEnd);
     }
     
     /** @expr [^] */
-    Token other() { return new Token(Token.OTHER, matchStart, matchEnd); }
+    int other() { return token(Token.OTHER, matchStart, matchEnd); }
 
     //%%LEX-CONDITION-END%%
 
     //%%LEX-MAIN-START%%
     
-    private static final byte[] CHARACTER_MAP = createCharacterMap(
+    private static final String CHARACTER_MAP_DATA =
     "\34\t\4\1\1\1\4\2\1\1\34\16\4\5\23\1\3\1\7\1\37\1\32\1\30\1" +
     "\2\1\b\1\t\1\5\1\35\1\4\1\36\1\17\1\6\1\102\1\103\1\75\6\64\2" +
     "\26\1\16\1\22\1\20\1\21\1\25\1\33\1\63\1\71\1\63\1\74\1\72\1" +
@@ -228,9 +218,9 @@ public class CppLexer extends Lexer {
     "\4\22\37\100\4\2\37\66\4\50\37\r\4\3\34\20\4\20\34\7\4\f\37\2" +
     "\4\30\37\3\4\31\37\1\4\6\37\5\4\1\37\207\4\2\34\1\4\4\37\1\4\13" +
     "\34\n\4\7\37\32\4\4\37\1\4\1\37\32\4\13\37\131\4\3\37\6\4\2" +
-    "\37\6\4\2\37\6\4\2\37\3\4\3\37\2\4\3\37\2\4\22\34\3\4\4");
+    "\37\6\4\2\37\6\4\2\37\3\4\3\37\2\4\3\37\2\4\22\34\3\4\4";
     
-    private static final short[][] TRANSITION_TABLE = createTransitionTable(
+    private static final String TRANSITION_TABLE_DATA =
     "\3\5\4\1\3\76\0\104\0\104\0\6\2\1\0\75\333\1\0\1\333\102\6\1\0\1\6\102" +
     "\0\104\b\1\0\1\b\102\0\104\0\104\0\34\21\1\0\2\21\45\0\34\21\1\0\2\21\45" +
     "\0\104\0\104\0\104\0\34\20\1\0\2\20\45\0\34\21\1\0\2\21\45\0\104\22\2" +
@@ -331,176 +321,48 @@ public class CppLexer extends Lexer {
     "\0\34\21\1\0\2\21\3\321\1\21\41\0\34\21\1\0\2\21\7\310\1\21\35\0\34\21\1" +
     "\0\2\21\31\323\1\21\13\0\34\21\1\0\2\21\7\324\1\21\35\0\34\21\1\0\2\21\26" +
     "\325\1\21\16\331\1\330\1\n\1\330\101\331\1\330\1\n\1\330\101\330\1\0\1" +
-    "\330\102\5\1\333\2\t\1\333\100\5\1\333\2\t\1\333\100\0\5\7\1\6\1\0\75");
+    "\330\102\5\1\333\2\t\1\333\100\5\1\333\2\t\1\333\100\0\5\7\1\6\1\0\75";
     
-    private static final byte[] ACTION_MAP = createActionMap(
+    private static final String ACTION_MAP_DATA =
     "\0\1\1\1\2\2\0\1\3\1\4\1\5\1\6\1\7\1\b\1\t\1\n\1\13\1" +
     "\f\1\r\1\16\1\17\1\0\1\n\1\f\1\0\1\13\1\f\1\13\1\f\1\0\1" +
-    "\13\3\16\100\b\1\16\62\t\1\16\104\17\1\0\2\17\1\0\1\n\1");
+    "\13\3\16\100\b\1\16\62\t\1\16\104\17\1\0\2\17\1\0\1\n\1";
+    
+    private static final String[] ACTION_NAMES = {
+    "endMultilineComment", "commentText", "createLineComment", "startMultilineComment",
+    "createDirective", "createString", "createChar", "createKeyword", "createKeyword2",
+    "createOperator", "createInteger", "createFloat", "createAnnotation", "createIdentifer", "other"
+    };
     
     private static final int LEXICAL_STATE_COMMENT = 0;
     private static final int LEXICAL_STATE_INITIAL = 1;
     
-    private String string = "";
-    private int regionEnd;
-    private int dot;
-    private int lexicalState = LEXICAL_STATE_INITIAL;
-    private int matchStart;
-    private int matchEnd;
-    private int startState = 18;
-    
-    private static byte[] createCharacterMap(String characterMapData) {
-        byte[] characterMap = new byte[65536];
-        int length = characterMapData.length();
-        int i = 0;
-        int j = 0;
-        
-        while (i < length) {
-            byte curValue = (byte)characterMapData.charAt(i++);
-            
-            for (int x=characterMapData.charAt(i++);x>0;x--) {
-                characterMap[j++] = curValue;
-            }
-        }
-        
-        return characterMap;
+    //Decoded when the first lexer is created rather than when the class is loaded
+    private static final class Tables {
+        static final LexerTables TABLES = LexerTables.decode(220, 68, new int[] { 0, 18 },
+                CHARACTER_MAP_DATA, TRANSITION_TABLE_DATA, ACTION_MAP_DATA, ACTION_NAMES);
     }
     
-    private static short[][] createTransitionTable(String transitionTableData) {
-        short[][] transitionTable = new short[220][68];
-        int length = transitionTableData.length();
-        int i = 0;
-        int j = 0;
-        int k = 0;
-        
-        while (i < length) {
-            short curValue = (short)((short)transitionTableData.charAt(i++) - 1);
-            
-            for (int x=transitionTableData.charAt(i++);x>0;x--) {
-                transitionTable[j][k++] = curValue;
-            }
-            
-            if (k == 68) {
-                k = 0;
-                j++;
-            }
+    protected int action(int action) {
+        switch(action) {
+        case 0: return endMultilineComment();
+        case 1: commentText(); return NO_TOKEN;
+        case 2: return createLineComment();
+        case 3: startMultilineComment(); return NO_TOKEN;
+        case 4: return createDirective();
+        case 5: return createString();
+        case 6: return createChar();
+        case 7: return createKeyword();
+        case 8: return createKeyword2();
+        case 9: return createOperator();
+        case 10: return createInteger();
+        case 11: return createFloat();
+        case 12: return createAnnotation();
+        case 13: return createIdentifer();
+        case 14: return other();
         }
         
-        return transitionTable;
-    }
-    
-    private static byte[] createActionMap(String actionMapData) {
-        byte[] actionMap = new byte[220];
-        int length = actionMapData.length();
-        int i = 0;
-        int j = 0;
-        
-        while (i < length) {
-            byte curValue = (byte)((short)actionMapData.charAt(i++) - 1);
-            
-            for (int x=actionMapData.charAt(i++);x>0;x--) {
-                actionMap[j++] = curValue;
-            }
-        }
-        
-        return actionMap;
-    }
-    
-    public void setStringInternal(String string) {
-        this.string = string != null ? string : "";
-        
-        regionEnd = this.string.length();
-        
-        dot = 0;
-        lexicalState = LEXICAL_STATE_INITIAL;
-        
-        matchStart = 0;
-        matchEnd = 0;
-        
-        startState = 18;
-    }
-    
-    private void setLexicalState(int lexicalState) {
-        switch(lexicalState) {
-        case LEXICAL_STATE_COMMENT: startState = 0; break;
-        case LEXICAL_STATE_INITIAL: startState = 18; break;
-        default:
-            throw new IllegalArgumentException("invalid lexical state");
-        }
-        
-        this.lexicalState = lexicalState;
-    }
-    
-    private int getMatchStart() {
-        return matchStart;
-    }
-    
-    private int getMatchEnd() {
-        return matchEnd;
-    }
-    
-    public Token getNextToken() {
-        while (dot < regionEnd) {
-            
-            // find longest match
-            int curState = startState;
-            int iterator = dot;
-            int matchState = -1;
-            int matchPosition = 0;
-            
-            do {
-                curState = TRANSITION_TABLE[curState][CHARACTER_MAP[string
-                        .charAt(iterator)]];
-                
-                if (curState == -1) {
-                    break;
-                }
-                
-                if (ACTION_MAP[curState] != -1) {
-                    matchState = curState;
-                    matchPosition = iterator;
-                }
-            } while (++iterator < regionEnd);
-            
-            // match found, perform action
-            if (matchState != -1) {
-                int endPosition = matchPosition + 1;
-                
-                matchStart = dot;
-                matchEnd = endPosition;
-                dot = endPosition;
-                
-                switch(ACTION_MAP[matchState]) {
-                case 0: return endMultilineComment();
-                case 1: commentText(); continue;
-                case 2: return createLineComment();
-                case 3: startMultilineComment(); continue;
-                case 4: return createDirective();
-                case 5: return createString();
-                case 6: return createChar();
-                case 7: return createKeyword();
-                case 8: return createKeyword2();
-                case 9: return createOperator();
-                case 10: return createInteger();
-                case 11: return createFloat();
-                case 12: return createAnnotation();
-                case 13: return createIdentifer();
-                case 14: return other();
-                }
-            }
-            
-            // no match found, set match values and report as error
-            matchStart = dot;
-            matchEnd = dot;
-            
-            throw new IllegalStateException("invalid input");
-        }
-        
-        // no match found, set match values and return to caller
-        matchStart = dot;
-        matchEnd = dot;
-        
-        return null;
+        throw new IllegalArgumentException("invalid action");
     }
     
     //%%LEX-MAIN-END%%
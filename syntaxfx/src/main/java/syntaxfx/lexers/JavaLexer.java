@@ -1,13 +1,16 @@
 package syntaxfx.lexers;
 
-import syntaxfx.Lexer;
+import syntaxfx.DfaLexer;
+import syntaxfx.LexerSpec;
+import syntaxfx.LexerTables;
 import syntaxfx.Token;
 
-import java.util.Stack;
-
 /**
  * The JavaLexer class represents a lexer for the Java programming language.
  * 
+ * The LEX-MAIN section is AnnoFlex output rewritten by convert_lexer.py to run on DfaLexer,
+ * so regenerate it with gen_lexers.sh rather than with AnnoFlex alone.
+ * 
  * @option functionality = all- setString+ getMatchStart+ getMatchEnd+ lexicalState+
  * @option visibility = all- stringMethods+ scanMethods+
  * @option internal = setString+
@@ -22,47 +25,38 @@ import java.util.Stack;
  * @macro BinaryInteger  = 0 [bB] [01]* 
  * @macro FloatNumber    = (([0-9]+\.[0-9]*) | (\.?[0-9]+)) ([eE][+-]?[0-9]+)?
  */
-public class JavaLexer extends Lexer {
-    Stack<Integer> stateStack = new Stack<>();
-    int stateStart = 0;
+public class JavaLexer extends DfaLexer {
+    public static final LexerSpec SPEC = JavaLexer::new;
 
-    public void setString(String string) {
-        setStringInternal(string);
-        stateStack.clear();
-        stateStack.push(LEXICAL_STATE_INITIAL);
+    public JavaLexer() {
+        super(Tables.TABLES, LEXICAL_STATE_INITIAL);
     }
 
-    private void enterLexicalState(int state) {
-        setLexicalState(state);
-        stateStack.push(state);
-    }
-
-    private void leaveLexicalState() {
-        stateStack.pop();
-        setLexicalState(stateStack.peek());
-    }
+    //How far createIdentifer looks past whitespace for a "(" after an identifier, so that long
+    //runs of whitespace don't make lexing quadratic
+    private static final int MAX_LOOKAROUND = 128;
 
     //%%LEX-CONDITION-START%%COMMENT%%
     
     /** @expr \*\/ */
-    Token endMultilineComment() {
+    int endMultilineComment() {
         leaveLexicalState();
-        return new Token(Token.COMMENT, stateStart, matchEnd);
+        return token(Token.COMMENT, stateStart, matchEnd);
     }
 
     /** @expr [^] */
-    void commentText() {}
+    void commentText() { skipTo("*/"); }
 
     //%%LEX-CONDITION-END%%
     
     //%%LEX-CONDITION-START%%DOCTAG%%
     
     /** @expr [^a-zA-Z] */
-    Token endTag() {
+    int endTag() {
         leaveLexicalState();
         int temp = stateStart;
         stateStart = matchStart;
-        return new Token(Token.DOC_COMMENT_TAG, temp, matchStart);
+        return token(Token.DOC_COMMENT_TAG, temp, matchStart);
     }
 
     /** @expr [^] */
@@ -73,28 +67,28 @@ public class JavaLexer extends Lexer {
     //%%LEX-CONDITION-START%%DOC%%
     
     /** @expr \*\/ */
-    Token endDoc() {
+    int endDoc() {
         leaveLexicalState();
-        return new Token(Token.DOC_COMMENT, stateStart, matchEnd);
+        return token(Token.DOC_COMMENT, stateStart, matchEnd);
     }
 
     /** @expr \@ */
-    Token startTag() {
+    int startTag() {
         enterLexicalState(LEXICAL_STATE_DOCTAG);
         int temp = stateStart;
         stateStart = matchStart;
-        return new Token(Token.DOC_COMMENT, temp, matchStart);
+        return token(Token.DOC_COMMENT, temp, matchStart);
     }
 
     /** @expr [^] */
-    void docText() {}
+    void docText() { skipTo("*/", '@'); }
 
     //%%LEX-CONDITION-END%%
    
     //%%LEX-CONDITION-START%%INITIAL%%
 
     /** @expr \/\/[^\r\n]* */
-    Token createLineComment() { return new Token(Token.COMMENT, matchStart, matchEnd); }
+    int createLineComment() { return token(Token.COMMENT, matchStart, matchEnd); }
 
     /** @expr \/\*\* */
     void startDoc() {
@@ -109,51 +103,51 @@ public class JavaLexer extends Lexer {
     }
 
     /** @expr \"(\\[^\r\n]|[^\\\"])*\" */
-    Token createString() { return new Token(Token.STRING, matchStart, matchEnd); }
+    int createString() { return token(Token.STRING, matchStart, matchEnd); }
     
      /** @expr \'(\\[^\r\n]|[^\\\'])*\' */
-    Token createChar() { return new Token(Token.STRING, matchStart, matchEnd); }
+    int createChar() { return token(Token.STRING, matchStart, matchEnd); }
     
     /** @expr package|void|public|protected|private|false|static|abstract|native|strictfp|synchronized|transient|volatile|const|extends|implements|throws|class */
-    Token createKeyword() { return new Token(Token.KEYWORD, matchStart, matchEnd); }
+    int createKeyword() { return token(Token.KEYWORD, matchStart, matchEnd); }
 
     /** @expr import|if|else|switch|case|default|for|while|do|continue|break|return|goto|try|catch|finally|throw|assert|true|false|null|this*/
-    Token createKeyword2() { return new Token(Token.KEYWORD2, matchStart, matchEnd); }
+    int createKeyword2() { return token(Token.KEYWORD2, matchStart, matchEnd); }
 
     /** @expr \(|\)|\{|\}|\[|\]|\;|\.|\=|\>|\<|\!|\~|\?|\:|\||\&|\^|\%|\+|\-|\*|\/ */
-    Token createOperator() { return new Token(Token.OPERATOR, matchStart, matchEnd); }
+    int createOperator() { return token(Token.OPERATOR, matchStart, matchEnd); }
 
     /** @expr {DecimalInteger}[Ll]? | {HexInteger}[Ll]? | {OctalInteger}[Ll]? | {BinaryInteger}[Ll]? */
-    Token createInteger() { return new Token(Token.NUMBER, matchStart, matchEnd); }
+    int createInteger() { return token(Token.NUMBER, matchStart, matchEnd); }
 
     /** @expr {FloatNumber}[fF]? | {FloatNumber}[dD] */
-    Token createFloat() { return new Token(Token.NUMBER, matchStart, matchEnd); }
+    int createFloat() { return token(Token.NUMBER, matchStart, matchEnd); }
 
     /** @expr \@\p{JavaIdentifierPart}* */
-    Token createAnnotation() { return new Token(Token.DOC_COMMENT_TAG, matchStart, matchEnd); }
+    int createAnnotation() { return token(Token.DOC_COMMENT_TAG, matchStart, matchEnd); }
 
     /** @expr \p{JavaIdentifierStart}\p{JavaIdentifierPart}* */
-    Token createIdentifer() {
+    int createIdentifer() {
+        //Find the next character that isn't whitespace, and remember how far we looked ahead
+        int limit = Math.min(regionEnd, matchEnd + MAX_LOOKAROUND);
+        int next = matchEnd;
+        while (next < limit && Character.isWhitespace(this.string.charAt(next)))
+            ++next;
+        scanEnd = Math.max(scanEnd, next + 1);
         //If the next character that isn't whitespace is a parentheses, it's a function
-        for (int i = matchEnd; i < this.string.length(); ++i) {
-            if (Character.isWhitespace(this.string.charAt(i)))
-                continue;
-            else if (this.string.charAt(i) == '(')
-                return new Token(Token.FUNCTION, matchStart, matchEnd);
-            else
-                break;
-        }
-        return new Token(Token.IDENTIFIER, matchStart, matchEnd);
+        if (next < limit && this.string.charAt(next) == '(')
+            return token(Token.FUNCTION, matchStart, matchEnd);
+        return token(Token.IDENTIFIER, matchStart, matchEnd);
     }
     
     /** @expr [^] */
-    Token other() { return new Token(Token.OTHER, matchStart, matchEnd); }
+    int other() { return token(Token.OTHER, matchStart, matchEnd); }
 
     //%%LEX-CONDITION-END%%
 
     //%%LEX-MAIN-START%%
     
-    private static final byte[] CHARACTER_MAP = createCharacterMap(
+    private static final String CHARACTER_MAP_DATA =
     "\33\t\4\1\1\1\4\2\1\1\33\16\4\5\23\1\3\1\4\1\37\1\32\1\30\1" +
     "\2\1\b\1\t\1\5\1\35\1\4\1\36\1\17\1\6\1\101\1\102\1\100\6\73\2" +
     "\26\1\16\1\22\1\20\1\21\1\25\1\7\1\62\1\67\1\62\1\72\1\70\1" +
@@ -244,9 +238,9 @@ public class JavaLexer extends Lexer {
     "\4\22\37\100\4\2\37\66\4\50\37\r\4\3\33\20\4\20\33\7\4\f\37\2" +
     "\4\30\37\3\4\31\37\1\4\6\37\5\4\1\37\207\4\2\33\1\4\4\37\1\4\13" +
     "\33\n\4\7\37\32\4\4\37\1\4\1\37\32\4\13\37\131\4\3\37\6\4\2" +
-    "\37\6\4\2\37\6\4\2\37\3\4\3\37\2\4\3\37\2\4\22\33\3\4\4");
+    "\37\6\4\2\37\6\4\2\37\3\4\3\37\2\4\3\37\2\4\22\33\3\4\4";
     
-    private static final short[][] TRANSITION_TABLE = createTransitionTable(
+    private static final String TRANSITION_TABLE_DATA =
     "\3\5\4\1\3\75\0\103\0\103\0\6\2\1\0\74\6\34\7\1\6\3\7\33\6\1\7\4\6\3" +
     "\0\103\0\103\13\5\f\1\13\1\n\1\13\73\0\103\0\103\0\103\0\6\t\1\0\74\254\1" +
     "\0\1\254\101\16\1\0\1\16\101\0\103\0\5\17\1\0\75\0\103\0\103\0\33\31\2" +
@@ -322,186 +316,57 @@ public class JavaLexer extends Lexer {
     "\31\2\0\2\31\t\244\1\31\32\0\33\31\2\0\2\31\27\245\1\31\f\0\33\31\2\0\2" +
     "\31\6\246\1\31\35\252\1\251\1\22\1\251\100\252\1\251\1\22\1\251\100\251\1" +
     "\0\1\251\101\r\1\254\2\21\1\254\77\r\1\254\2\21\1\254\77\0\5\20\1\16\1" +
-    "\0\74");
+    "\0\74";
     
-    private static final byte[] ACTION_MAP = createActionMap(
+    private static final String ACTION_MAP_DATA =
     "\0\1\1\1\2\2\0\1\3\1\4\1\0\1\5\1\6\1\7\2\0\1\b\1\t\1\n\1" +
     "\13\1\f\1\r\1\16\1\17\1\20\1\21\1\22\1\23\1\24\1\0\1\17\1" +
     "\21\1\0\1\20\1\21\1\20\1\21\1\0\1\20\3\23\145\16\1\23\33" +
-    "\24\1\0\2\24\1\0\1\17\1");
+    "\24\1\0\2\24\1\0\1\17\1";
+    
+    private static final String[] ACTION_NAMES = {
+    "endMultilineComment", "commentText", "endTag", "doctagText", "endDoc", "startTag", "docText",
+    "createLineComment", "startDoc", "startMultilineComment", "createString", "createChar",
+    "createKeyword", "createKeyword2", "createOperator", "createInteger", "createFloat",
+    "createAnnotation", "createIdentifer", "other"
+    };
     
     private static final int LEXICAL_STATE_COMMENT = 0;
     private static final int LEXICAL_STATE_DOCTAG = 1;
     private static final int LEXICAL_STATE_DOC = 2;
     private static final int LEXICAL_STATE_INITIAL = 3;
     
-    private String string = "";
-    private int regionEnd;
-    private int dot;
-    private int lexicalState = LEXICAL_STATE_INITIAL;
-    private int matchStart;
-    private int matchEnd;
-    private int startState = 26;
-    
-    private static byte[] createCharacterMap(String characterMapData) {
-        byte[] characterMap = new byte[65536];
-        int length = characterMapData.length();
-        int i = 0;
-        int j = 0;
-        
-        while (i < length) {
-            byte curValue = (byte)characterMapData.charAt(i++);
-            
-            for (int x=characterMapData.charAt(i++);x>0;x--) {
-                characterMap[j++] = curValue;
-            }
-        }
-        
-        return characterMap;
-    }
-    
-    private static short[][] createTransitionTable(String transitionTableData) {
-        short[][] transitionTable = new short[173][67];
-        int length = transitionTableData.length();
-        int i = 0;
-        int j = 0;
-        int k = 0;
-        
-        while (i < length) {
-            short curValue = (short)((short)transitionTableData.charAt(i++) - 1);
-            
-            for (int x=transitionTableData.charAt(i++);x>0;x--) {
-                transitionTable[j][k++] = curValue;
-            }
-            
-            if (k == 67) {
-                k = 0;
-                j++;
-            }
-        }
-        
-        return transitionTable;
-    }
-    
-    private static byte[] createActionMap(String actionMapData) {
-        byte[] actionMap = new byte[173];
-        int length = actionMapData.length();
-        int i = 0;
-        int j = 0;
-        
-        while (i < length) {
-            byte curValue = (byte)((short)actionMapData.charAt(i++) - 1);
-            
-            for (int x=actionMapData.charAt(i++);x>0;x--) {
-                actionMap[j++] = curValue;
-            }
-        }
-        
-        return actionMap;
-    }
-    
-    public void setStringInternal(String string) {
-        this.string = string != null ? string : "";
-        
-        regionEnd = this.string.length();
-        
-        dot = 0;
-        lexicalState = LEXICAL_STATE_INITIAL;
-        
-        matchStart = 0;
-        matchEnd = 0;
-        
-        startState = 26;
+    //Decoded when the first lexer is created rather than when the class is loaded
+    private static final class Tables {
+        static final LexerTables TABLES = LexerTables.decode(173, 67, new int[] { 0, 4, 7, 26 },
+                CHARACTER_MAP_DATA, TRANSITION_TABLE_DATA, ACTION_MAP_DATA, ACTION_NAMES);
     }
     
-    private void setLexicalState(int lexicalState) {
-        switch(lexicalState) {
-        case LEXICAL_STATE_COMMENT: startState = 0; break;
-        case LEXICAL_STATE_DOCTAG: startState = 4; break;
-        case LEXICAL_STATE_DOC: startState = 7; break;
-        case LEXICAL_STATE_INITIAL: startState = 26; break;
-        default:
-            throw new IllegalArgumentException("invalid lexical state");
+    protected int action(int action) {
+        switch(action) {
+        case 0: return endMultilineComment();
+        case 1: commentText(); return NO_TOKEN;
+        case 2: return endTag();
+        case 3: doctagText(); return NO_TOKEN;
+        case 4: return endDoc();
+        case 5: return startTag();
+        case 6: docText(); return NO_TOKEN;
+        case 7: return createLineComment();
+        case 8: startDoc(); return NO_TOKEN;
+        case 9: startMultilineComment(); return NO_TOKEN;
+        case 10: return createString();
+        case 11: return createChar();
+        case 12: return createKeyword();
+        case 13: return createKeyword2();
+        case 14: return createOperator();
+        case 15: return createInteger();
+        case 16: return createFloat();
+        case 17: return createAnnotation();
+        case 18: return createIdentifer();
+        case 19: return other();
         }
         
-        this.lexicalState = lexicalState;
-    }
-    
-    private int getMatchStart() {
-        return matchStart;
-    }
-    
-    private int getMatchEnd() {
-        return matchEnd;
-    }
-    
-    public Token getNextToken() {
-        while (dot < regionEnd) {
-            
-            // find longest match
-            int curState = startState;
-            int iterator = dot;
-            int matchState = -1;
-            int matchPosition = 0;
-            
-            do {
-                curState = TRANSITION_TABLE[curState][CHARACTER_MAP[string
-                        .charAt(iterator)]];
-                
-                if (curState == -1) {
-                    break;
-                }
-                
-                if (ACTION_MAP[curState] != -1) {
-                    matchState = curState;
-                    matchPosition = iterator;
-                }
-            } while (++iterator < regionEnd);
-            
-            // match found, perform action
-            if (matchState != -1) {
-                int endPosition = matchPosition + 1;
-                
-                matchStart = dot;
-                matchEnd = endPosition;
-                dot = endPosition;
-                
-                switch(ACTION_MAP[matchState]) {
-                case 0: return endMultilineComment();
-                case 1: commentText(); continue;
-                case 2: return endTag();
-                case 3: doctagText(); continue;
-                case 4: return endDoc();
-                case 5: return startTag();
-                case 6: docText(); continue;
-                case 7: return createLineComment();
-                case 8: startDoc(); continue;
-                case 9: startMultilineComment(); continue;
-                case 10: return createString();
-                case 11: return createChar();
-                case 12: return createKeyword();
-                case 13: return createKeyword2();
-                case 14: return createOperator();
-                case 15: return createInteger();
-                case 16: return createFloat();
-                case 17: return createAnnotation();
-                case 18: return createIdentifer();
-                case 19: return other();
-                }
-            }
-            
-            // no match found, set match values and report as error
-            matchStart = dot;
-            matchEnd = dot;
-            
-            throw new IllegalStateException("invalid input");
-        }
-        
-        // no match found, set match values and return to caller
-        matchStart = dot;
-        matchEnd = dot;
-        
-        return null;
+        throw new IllegalArgumentException("invalid action");
     }
     
     //%%LEX-MAIN-END%%
@@ -0,0 +1,72 @@
+package syntaxfx;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class CharacterMapTest {
+
+    @Test
+    public void decodesLikeExpandingTheRuns() {
+        Random random = new Random(23);
+        for (int run = 0; run < 50; ++run) {
+            byte[] expected = new byte[65536];
+            StringBuilder data = new StringBuilder();
+            int c = 0;
+            while (c < expected.length) {
+                //Mostly short runs, now and then one spanning several blocks
+                int count = random.nextInt(8) == 0 ? random.nextInt(2000) + 1 : random.nextInt(40) + 1;
+                count = Math.min(count, expected.length - c);
+                byte characterClass = (byte)random.nextInt(5);
+                append(data, characterClass, count);
+                for (int i = 0; i < count; ++i)
+                    expected[c++] = characterClass;
+            }
+            CharacterMap map = CharacterMap.decode(data.toString());
+            for (c = 0; c < expected.length; ++c)
+                assertEquals("class of " + c, expected[c], map.classOf((char)c));
+        }
+    }
+
+    @Test
+    public void blocksOfOneClassAreShared() {
+        StringBuilder data = new StringBuilder();
+        append(data, (byte)1, 128);
+        append(data, (byte)2, 65536 - 128);
+        CharacterMap map = CharacterMap.decode(data.toString());
+        assertEquals(1, map.classOf('a'));
+        assertEquals(2, map.classOf('\u00e9'));
+        assertEquals(2, map.classOf('\uffff'));
+        //The block with ASCII in it, and one block of class 2 for the rest
+        assertEquals(2, map.distinctBlocks());
+    }
+
+    @Test
+    public void blocksMappingToTheSameClassesAreShared() {
+        StringBuilder data = new StringBuilder();
+        for (int block = 0; block < 256; ++block) {
+            //Every other block has the same mix of classes
+            if (block % 2 == 0) {
+                append(data, (byte)0, 256);
+            } else {
+                append(data, (byte)3, 100);
+                append(data, (byte)4, 156);
+            }
+        }
+        CharacterMap map = CharacterMap.decode(data.toString());
+        assertEquals(3, map.classOf((char)(256 + 99)));
+        assertEquals(4, map.classOf((char)(65536 - 1)));
+        assertEquals(2, map.distinctBlocks());
+    }
+
+    //Adds a run in the form the lexer generator writes, splitting runs too long for one char
+    private static void append(StringBuilder data, byte characterClass, int count) {
+        while (count > 0) {
+            int n = Math.min(count, Character.MAX_VALUE);
+            data.append((char)characterClass).append((char)n);
+            count -= n;
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package syntaxfx;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class DamageTest {
+
+    @Test
+    public void emptyUntilAnEditIsAdded() {
+        Damage damage = new Damage();
+        assertTrue(damage.isEmpty());
+        damage.add(3, 5, 4);
+        assertEquals(3, damage.start);
+        assertEquals(4, damage.end);
+        assertEquals(-1, damage.delta);
+    }
+
+    @Test
+    public void editsInsideTheRangeMoveItsEnd() {
+        Damage damage = new Damage();
+        damage.add(10, 10, 15);
+        damage.add(12, 14, 12);
+        assertEquals(10, damage.start);
+        assertEquals(13, damage.end);
+        assertEquals(3, damage.delta);
+    }
+
+    @Test
+    public void editsAfterTheRangeWidenIt() {
+        Damage damage = new Damage();
+        damage.add(10, 10, 15);
+        damage.add(20, 25, 21);
+        assertEquals(10, damage.start);
+        assertEquals(21, damage.end);
+        assertEquals(1, damage.delta);
+    }
+
+    @Test
+    public void removalOverlappingTheEndOfTheRangeEndsItAtTheRemoval() {
+        Damage damage = new Damage();
+        damage.add(10, 10, 15);
+        damage.add(12, 20, 12);
+        assertEquals(10, damage.start);
+        assertEquals(12, damage.end);
+        assertEquals(-3, damage.delta);
+    }
+
+    @Test
+    public void randomEditsOnlyChangeTheTextInTheRange() {
+        Random random = new Random(11);
+        for (int run = 0; run < 2000; ++run) {
+            String original = Samples.TEXTS[run % Samples.TEXTS.length];
+            String text = original;
+            Damage damage = new Damage();
+            for (int count = 1 + random.nextInt(5); count > 0; --count) {
+                Samples.Edit edit = Samples.Edit.random(random, text);
+                text = edit.applyTo(text);
+                edit.addTo(damage);
+            }
+            assertCovers(original, text, damage);
+        }
+    }
+
+    @Test
+    public void addingLaterEditsCoversBoth() {
+        Random random = new Random(13);
+        for (int run = 0; run < 2000; ++run) {
+            String original = Samples.TEXTS[run % Samples.TEXTS.length];
+            String text = original;
+            Damage earlier = new Damage();
+            Damage later = new Damage();
+            Damage each = new Damage();
+            for (int count = 1 + random.nextInt(6); count > 0; --count) {
+                Samples.Edit edit = Samples.Edit.random(random, text);
+                text = edit.applyTo(text);
+                edit.addTo(count % 2 == 0 || !later.isEmpty() ? later : earlier);
+                edit.addTo(each);
+            }
+            earlier.add(later);
+            assertCovers(original, text, earlier);
+            assertEquals(each.delta, earlier.delta);
+        }
+    }
+
+    @Test
+    public void addingNothingChangesNothing() {
+        Damage damage = new Damage();
+        damage.add(4, 6, 9);
+        damage.add(new Damage());
+        assertEquals(4, damage.start);
+        assertEquals(9, damage.end);
+        assertEquals(3, damage.delta);
+    }
+
+    @Test
+    public void removeBeforeAndInclude() {
+        Damage damage = new Damage();
+        damage.add(10, 10, 20);
+        damage.removeBefore(15);
+        assertEquals(15, damage.start);
+        assertEquals(20, damage.end);
+        damage.include(5, 8);
+        assertEquals(5, damage.start);
+        assertEquals(20, damage.end);
+        assertEquals(10, damage.delta);
+        damage.removeBefore(20);
+        assertTrue(damage.isEmpty());
+    }
+
+    //The text outside the range, adjusted for the change in length, must be as it was
+    private static void assertCovers(String original, String text, Damage damage) {
+        assertEquals(text.length() - original.length(), damage.delta);
+        assertTrue(0 <= damage.start && damage.start <= damage.end && damage.end <= text.length());
+        assertEquals(original.substring(0, damage.start), text.substring(0, damage.start));
+        assertEquals(original.substring(damage.end - damage.delta), text.substring(damage.end));
+    }
+}
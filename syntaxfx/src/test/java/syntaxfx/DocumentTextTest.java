@@ -0,0 +1,73 @@
+package syntaxfx;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Random;
+
+import org.fxmisc.richtext.model.ReadOnlyStyledDocument;
+import org.fxmisc.richtext.model.SegmentOps;
+import org.junit.Test;
+
+public class DocumentTextTest {
+
+    @Test
+    public void readsLikeTheDocumentsText() {
+        Random random = new Random(17);
+        for (String sample : Samples.TEXTS) {
+            DocumentText text = documentText(sample);
+            assertEquals(sample.length(), text.length());
+            assertEquals(sample, text.toString());
+            //In order, then jumping around
+            for (int i = 0; i < sample.length(); ++i)
+                assertEquals(sample.charAt(i), text.charAt(i));
+            for (int run = 0; run < 1000; ++run) {
+                int index = random.nextInt(sample.length());
+                assertEquals(sample.charAt(index), text.charAt(index));
+            }
+        }
+    }
+
+    @Test
+    public void copiesRangesAcrossParagraphs() {
+        Random random = new Random(19);
+        for (String sample : Samples.TEXTS) {
+            DocumentText text = documentText(sample);
+            for (int run = 0; run < 1000; ++run) {
+                int start = random.nextInt(sample.length() + 1);
+                int end = start + random.nextInt(Math.min(200, sample.length() - start) + 1);
+                assertEquals(sample.substring(start, end), text.subSequence(start, end));
+            }
+            assertEquals(sample, text.subSequence(0, sample.length()));
+        }
+    }
+
+    @Test
+    public void emptyParagraphs() {
+        DocumentText text = documentText("\n\nab\n\n");
+        assertEquals("\n\nab\n\n", text.subSequence(0, text.length()));
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void noNewlineAfterTheLastParagraph() {
+        DocumentText text = documentText("ab\ncd");
+        assertEquals('d', text.charAt(4));
+        text.charAt(5);
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void noRangePastTheEnd() {
+        documentText("ab\ncd").subSequence(3, 6);
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void noCharacterBeforeTheStart() {
+        documentText("ab\ncd").charAt(-1);
+    }
+
+    private static DocumentText documentText(String text) {
+        return new DocumentText(ReadOnlyStyledDocument.<Collection<String>, String, Collection<String>>fromString(
+                text, Collections.emptyList(), Collections.emptyList(), SegmentOps.styledTextOps()));
+    }
+}
@@ -0,0 +1,59 @@
+package syntaxfx;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.time.Duration;
+
+import org.junit.Test;
+
+public class HighlightingPolicyTest {
+
+    @Test
+    public void adaptiveHighlightsStraightAwayAfterCheapPasses() {
+        HighlightingPolicy policy = HighlightingPolicy.adaptive();
+        assertEquals(Duration.ZERO, policy.delay(Duration.ZERO));
+        assertEquals(Duration.ZERO, policy.delay(Duration.ofMillis(4)));
+    }
+
+    @Test
+    public void adaptiveWaitsLongerAfterSlowerPasses() {
+        HighlightingPolicy policy = HighlightingPolicy.adaptive();
+        assertEquals(Duration.ofMillis(10), policy.delay(Duration.ofMillis(5)));
+        assertEquals(Duration.ofMillis(400), policy.delay(Duration.ofMillis(200)));
+    }
+
+    @Test
+    public void adaptiveWaitsNoLongerThanMaxDelay() {
+        HighlightingPolicy policy = HighlightingPolicy.adaptive();
+        assertEquals(Duration.ofMillis(500), policy.delay(Duration.ofMillis(250)));
+        assertEquals(Duration.ofMillis(500), policy.delay(Duration.ofSeconds(10)));
+    }
+
+    @Test
+    public void adaptiveWithOwnSettings() {
+        HighlightingPolicy policy = HighlightingPolicy.adaptive(Duration.ofMillis(1), 3, Duration.ofMillis(50), null);
+        assertEquals(Duration.ZERO, policy.delay(Duration.ofMillis(1)));
+        assertEquals(Duration.ofMillis(6), policy.delay(Duration.ofMillis(2)));
+        assertEquals(Duration.ofMillis(50), policy.delay(Duration.ofMillis(20)));
+        assertNull(policy.fxThreadBudget());
+        assertEquals(Duration.ofMillis(10), HighlightingPolicy.adaptive().fxThreadBudget());
+    }
+
+    @Test
+    public void fixedAlwaysWaitsTheSameAndNeverSplitsPasses() {
+        HighlightingPolicy policy = HighlightingPolicy.fixed(Duration.ofMillis(20));
+        assertEquals(Duration.ofMillis(20), policy.delay(Duration.ZERO));
+        assertEquals(Duration.ofMillis(20), policy.delay(Duration.ofSeconds(1)));
+        assertNull(policy.fxThreadBudget());
+    }
+
+    @Test
+    public void withFxThreadBudgetKeepsTheDelay() {
+        HighlightingPolicy policy = HighlightingPolicy.adaptive().withFxThreadBudget(Duration.ofMillis(3));
+        assertEquals(Duration.ofMillis(3), policy.fxThreadBudget());
+        assertEquals(Duration.ZERO, policy.delay(Duration.ofMillis(2)));
+        assertEquals(Duration.ofMillis(100), policy.delay(Duration.ofMillis(50)));
+        assertNull(policy.withFxThreadBudget(null).fxThreadBudget());
+    }
+}
@@ -0,0 +1,109 @@
+package syntaxfx;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.time.Duration;
+
+import org.junit.Test;
+
+public class HighlightingStatisticsTest {
+
+    @Test
+    public void percentilesAreNearestRank() {
+        HighlightingStatistics statistics = new HighlightingStatistics();
+        for (int millis : new int[] { 30, 10, 40, 20 })
+            statistics.completed(pass(millis));
+        assertEquals(Duration.ofMillis(10), statistics.getLexTimePercentile(0));
+        assertEquals(Duration.ofMillis(10), statistics.getLexTimePercentile(25));
+        assertEquals(Duration.ofMillis(20), statistics.getLexTimePercentile(26));
+        assertEquals(Duration.ofMillis(20), statistics.getLexTimePercentile(50));
+        assertEquals(Duration.ofMillis(40), statistics.getLexTimePercentile(100));
+        //The other timings are a tenth and a hundredth of the lex time
+        assertEquals(Duration.ofMillis(3), statistics.getBuildTimePercentile(75));
+        assertEquals(Duration.ofMillis(40).plusMillis(4).plusNanos(400000), statistics.getPassTimePercentile(100));
+    }
+
+    @Test
+    public void percentilesCoverTheLatestPasses() {
+        HighlightingStatistics statistics = new HighlightingStatistics();
+        for (int millis = 1; millis <= 300; ++millis)
+            statistics.completed(pass(millis));
+        assertEquals(300, statistics.getCompletedPasses());
+        assertEquals(Duration.ofMillis(300 - 256 + 1), statistics.getLexTimePercentile(0));
+        assertEquals(Duration.ofMillis(300), statistics.getLexTimePercentile(100));
+        assertEquals(Duration.ofMillis(300), statistics.getLastPass().getLexTime());
+    }
+
+    @Test
+    public void percentilesAreZeroWithoutPasses() {
+        HighlightingStatistics statistics = new HighlightingStatistics();
+        assertEquals(Duration.ZERO, statistics.getLexTimePercentile(50));
+        assertEquals(Duration.ZERO, statistics.getApplyTimePercentile(99));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void percentilesOutsideZeroToHundredAreRejected() {
+        new HighlightingStatistics().getLexTimePercentile(101);
+    }
+
+    @Test
+    public void eachPassIsCountedOnce() {
+        HighlightingStatistics statistics = new HighlightingStatistics();
+        HighlightingStatistics.Recorder completed = pass(5);
+        statistics.completed(completed);
+        statistics.completed(completed);
+        statistics.cancelled(completed);
+        HighlightingStatistics.Recorder cancelled = pass(6);
+        statistics.cancelled(cancelled);
+        statistics.completed(cancelled);
+        statistics.skipped();
+        assertEquals(1, statistics.getCompletedPasses());
+        assertEquals(1, statistics.getCancelledPasses());
+        assertEquals(1, statistics.getSkippedPasses());
+        assertEquals(Duration.ofMillis(5), statistics.getLastPass().getLexTime());
+    }
+
+    @Test
+    public void resetForgetsThePassesSoFar() {
+        HighlightingStatistics statistics = new HighlightingStatistics();
+        for (int millis = 1; millis <= 10; ++millis)
+            statistics.completed(pass(millis));
+        statistics.cancelled(pass(1));
+        statistics.skipped();
+        statistics.reset();
+        assertNull(statistics.getLastPass());
+        assertEquals(0, statistics.getCompletedPasses());
+        assertEquals(0, statistics.getCancelledPasses());
+        assertEquals(0, statistics.getSkippedPasses());
+        assertEquals(Duration.ZERO, statistics.getLexTimePercentile(100));
+
+        statistics.completed(pass(50));
+        assertEquals(Duration.ofMillis(50), statistics.getLexTimePercentile(0));
+        assertEquals(Duration.ofMillis(50), statistics.getLexTimePercentile(100));
+    }
+
+    @Test
+    public void passKeepsWhatItsRecorderRecorded() {
+        HighlightingStatistics.Recorder recorder = pass(2);
+        recorder.tokens = 7;
+        recorder.spans = 5;
+        recorder.charactersLexed = 40;
+        recorder.full = true;
+        HighlightingStatistics.Pass pass = new HighlightingStatistics.Pass(recorder);
+        assertEquals(7, pass.getTokenCount());
+        assertEquals(5, pass.getSpanCount());
+        assertEquals(40, pass.getCharactersLexed());
+        assertTrue(pass.isFull());
+        assertEquals(Duration.ofMillis(2).plusNanos(220000), pass.getTotalTime());
+    }
+
+    private static HighlightingStatistics.Recorder pass(int lexMillis) {
+        HighlightingStatistics.Recorder recorder = new HighlightingStatistics.Recorder();
+        recorder.lexNanos = lexMillis * 1000000L;
+        recorder.buildNanos = lexMillis * 100000L;
+        recorder.applyNanos = lexMillis * 10000L;
+        return recorder;
+    }
+}
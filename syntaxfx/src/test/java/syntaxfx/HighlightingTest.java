@@ -0,0 +1,155 @@
+package syntaxfx;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.fxmisc.richtext.model.StyleSpan;
+import org.fxmisc.richtext.model.StyleSpans;
+import org.junit.Test;
+
+import syntaxfx.lexers.JavaLexer;
+
+/**
+ * Checks that restyling only what a pass changed leaves every character styled as highlighting
+ * the whole document from scratch would. Passes work out what to restyle with Highlighter's own
+ * Restyle, without an area to apply the styles to.
+ */
+public class HighlightingTest {
+
+    private static final StyleMapper<String> STYLES = StyleMapper.of("plain", type -> "token" + type);
+
+    @Test
+    public void restyledRangeMatchesHighlightingFromScratch() {
+        checkRandomEdits(false, Integer.MAX_VALUE);
+    }
+
+    @Test
+    public void restyledRangeMatchesHighlightingFromScratchInChunks() {
+        checkRandomEdits(false, 40);
+    }
+
+    @Test
+    public void restyledRangeMatchesHighlightingFromScratchWithSpanMerging() {
+        checkRandomEdits(true, Integer.MAX_VALUE);
+        checkRandomEdits(true, 40);
+    }
+
+    @Test
+    public void deletingEndOfDocCommentRestylesTextAfterTag() {
+        //The doc tag's action reads the space after "@author", which isn't part of any token
+        //once the comment is no longer closed
+        String text = "/** @author */\nint a;\n";
+        int position = text.indexOf("*/");
+        for (boolean merge : new boolean[] { false, true }) {
+            Pass pass = new Pass(new JavaLexer(), text, merge, Integer.MAX_VALUE);
+            pass.edit(new Samples.Edit(position, position + 2, ""), false);
+            assertEquals(highlight(pass.text, new JavaLexer(), merge), pass.styles);
+        }
+    }
+
+    private static void checkRandomEdits(boolean merge, int chunkSize) {
+        Random random = new Random(7);
+        for (int i = 0; i < Samples.TEXTS.length; ++i) {
+            Pass pass = new Pass(Samples.SPECS[i].createLexer(), Samples.TEXTS[i], merge, chunkSize);
+            for (int edit = 0; edit < 200; ++edit) {
+                //Now and then a pass is superseded before all of its results are applied, and the
+                //next pass has to restyle what they would have
+                pass.edit(Samples.Edit.random(random, pass.text), random.nextInt(8) == 0);
+                if (pass.upToDate())
+                    assertEquals("after edit " + edit, highlight(pass.text, Samples.SPECS[i].createLexer(), merge),
+                            pass.styles);
+            }
+        }
+    }
+
+    //The style of each character of text, highlighted from scratch
+    static List<String> highlight(String text, Lexer lexer, boolean merge) {
+        TokenList tokens = new TokenList();
+        Damage damage = new Damage();
+        damage.add(0, 0, text.length());
+        tokens.relex(lexer, text, damage, Integer.MAX_VALUE, TokenList.NO_DEADLINE, false, null);
+        List<String> styles = new ArrayList<String>(text.length());
+        apply(Highlighter.computeHighlighting(tokens, text, 0, text.length(), merge, STYLES), styles, 0);
+        return styles;
+    }
+
+    private static void apply(StyleSpans<String> spans, List<String> styles, int from) {
+        int position = from;
+        for (StyleSpan<String> span : spans) {
+            for (int i = 0; i < span.getLength(); ++i) {
+                if (position < styles.size())
+                    styles.set(position, span.getStyle());
+                else
+                    styles.add(span.getStyle());
+                ++position;
+            }
+        }
+    }
+
+    //A document, its tokens and the style of each character, kept up to date like Highlighter does
+    static class Pass {
+        final Lexer lexer;
+        final boolean merge;
+        final int chunkSize;
+        final TokenList tokens = new TokenList();
+        final Highlighter.Restyle restyle = new Highlighter.Restyle();
+        final Damage unlexed = new Damage();
+        String text;
+        List<String> styles;
+        //Whether the last result posted was applied
+        boolean lastApplied = true;
+
+        Pass(Lexer lexer, String text, boolean merge, int chunkSize) {
+            this.lexer = lexer;
+            this.text = text;
+            this.merge = merge;
+            this.chunkSize = chunkSize;
+            Damage damage = new Damage();
+            damage.add(0, 0, text.length());
+            tokens.relex(lexer, text, damage, Integer.MAX_VALUE, TokenList.NO_DEADLINE, false, null);
+            styles = new ArrayList<String>(text.length());
+            apply(Highlighter.computeHighlighting(tokens, text, 0, text.length(), merge, STYLES), styles, 0);
+        }
+
+        //Makes the edit and runs a pass over it. A superseded pass stops after its first piece, and
+        //the result that piece posted is never applied.
+        void edit(Samples.Edit edit, boolean superseded) {
+            text = edit.applyTo(text);
+            styles.subList(edit.position, edit.removalEnd).clear();
+            styles.addAll(edit.position, Collections.nCopies(edit.inserted.length(), "unstyled"));
+            Damage changes = new Damage();
+            edit.addTo(changes);
+            restyle.begin(changes, lastApplied);
+            unlexed.add(changes);
+
+            //Each result is built when it's posted, like runChunk() does, and applied later
+            StyleSpans<String> last = null;
+            int lastFrom = 0;
+            boolean done = false;
+            while (!done) {
+                tokens.relex(lexer, text, unlexed, chunkSize, TokenList.NO_DEADLINE, false, null);
+                done = unlexed.isEmpty();
+                int[] range = restyle.next(tokens, text, done, merge);
+                if (range == null)
+                    continue;
+                if (last != null)
+                    apply(last, styles, lastFrom);
+                last = Highlighter.computeHighlighting(tokens, text, range[0], range[1], merge, STYLES);
+                lastFrom = range[0];
+                if (superseded)
+                    break;
+            }
+            lastApplied = !superseded || last == null;
+            if (lastApplied && last != null)
+                apply(last, styles, lastFrom);
+        }
+
+        boolean upToDate() {
+            return lastApplied && unlexed.isEmpty();
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package syntaxfx;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import syntaxfx.lexers.CLexer;
+import syntaxfx.lexers.JavaLexer;
+
+public class LexerProfileTest {
+
+    @Test
+    public void countsWhatTheLexerDid() {
+        LexerProfile profile = new LexerProfile();
+        String text = "class A { int b = c; }";
+        int tokens = lex(profile.profile(new JavaLexer()), text);
+        assertEquals(20, profile.getActions().size());
+        assertEquals(1, profile.getInvocations("createKeyword"));
+        assertEquals(5, profile.getCharactersConsumed("createKeyword"));
+        assertEquals(4, profile.getInvocations("createIdentifer"));
+        assertEquals(4, profile.getInvocations("createOperator"));
+        assertEquals(0, profile.getInvocations("startDoc"));
+        assertEquals(0, profile.getInvocations("no such action"));
+        assertEquals(text.length(), profile.getCharactersConsumed());
+        assertEquals(tokens, profile.getTokens());
+        assertTrue(profile.getTransitions() >= text.length());
+        assertTrue(profile.toString().contains("createKeyword"));
+    }
+
+    @Test
+    public void countsAcrossLexersOfTheSameLanguage() {
+        LexerProfile profile = new LexerProfile();
+        LexerSpec spec = profile.profile(JavaLexer.SPEC);
+        lex(spec.createLexer(), Samples.JAVA);
+        long consumed = profile.getCharactersConsumed();
+        long tokens = profile.getTokens();
+        lex(spec.createLexer(), Samples.JAVA);
+        assertEquals(Samples.JAVA.length(), consumed);
+        assertEquals(2 * consumed, profile.getCharactersConsumed());
+        assertEquals(2 * tokens, profile.getTokens());
+    }
+
+    @Test
+    public void resetSetsEveryCountToZero() {
+        LexerProfile profile = new LexerProfile();
+        JavaLexer lexer = profile.profile(new JavaLexer());
+        lex(lexer, Samples.JAVA);
+        profile.reset();
+        assertEquals(0, profile.getCharactersConsumed());
+        assertEquals(0, profile.getTransitions());
+        assertEquals(0, profile.getBacktracked());
+        assertEquals(0, profile.getTokens());
+        for (String action : profile.getActions())
+            assertEquals(0, profile.getInvocations(action));
+
+        lex(lexer, "class");
+        assertEquals(1, profile.getInvocations("createKeyword"));
+        assertEquals(5, profile.getCharactersConsumed());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void countsOnlyOneLanguage() {
+        LexerProfile profile = new LexerProfile();
+        profile.profile(new JavaLexer());
+        profile.profile(new CLexer());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void onlyGeneratedLexersCanBeProfiled() {
+        LexerSpec spec = () -> new Lexer() {
+            @Override
+            public void setString(String str) {
+            }
+
+            @Override
+            public Token getNextToken() {
+                return null;
+            }
+        };
+        new LexerProfile().profile(spec).createLexer();
+    }
+
+    //Lexes all of text, returning the number of tokens
+    private static int lex(Lexer lexer, String text) {
+        lexer.setString(text);
+        int tokens = 0;
+        while (lexer.getNextToken() != null)
+            ++tokens;
+        return tokens;
+    }
+}
@@ -0,0 +1,136 @@
+package syntaxfx;
+
+import java.util.Random;
+
+import syntaxfx.lexers.CLexer;
+import syntaxfx.lexers.CppLexer;
+import syntaxfx.lexers.JavaLexer;
+import syntaxfx.lexers.PythonLexer;
+
+/**
+ * Source text in each language, and random edits to make to it.
+ */
+final class Samples {
+
+    static final String JAVA =
+        "package demo;\n" +
+        "\n" +
+        "import java.util.List;\n" +
+        "\n" +
+        "/**\n" +
+        " * A class with a doc comment.\n" +
+        " *\n" +
+        " * @author someone\n" +
+        " * @param <T> the type of {@code items}\n" +
+        " */\n" +
+        "@SuppressWarnings(\"unchecked\")\n" +
+        "public class Demo<T> {\n" +
+        "    /* A block comment */\n" +
+        "    private final List<T> items; // a line comment\n" +
+        "    private static final char QUOTE = '\\'';\n" +
+        "\n" +
+        "    public int count(String text) {\n" +
+        "        int total = 0x1F + 017 + 0b101 + 10L;\n" +
+        "        double ratio = 1.5e3 / 2.0f;\n" +
+        "        for (int i = 0; i < text.length(); ++i) {\n" +
+        "            if (text.charAt(i) == '\"')\n" +
+        "                total += items.size();\n" +
+        "        }\n" +
+        "        return total > 0 ? total : -1;\n" +
+        "    }\n" +
+        "}\n";
+
+    static final String C =
+        "#include <stdio.h>\n" +
+        "#define MAX 100\n" +
+        "\n" +
+        "/* A block comment\n" +
+        "   over two lines */\n" +
+        "static int count(const char *text) {\n" +
+        "    int total = 0x1F + 017; // a line comment\n" +
+        "    double ratio = 1.5e3 / 2.0f;\n" +
+        "    while (*text != '\\0') {\n" +
+        "        if (*text++ == '\"')\n" +
+        "            total += MAX;\n" +
+        "    }\n" +
+        "    printf(\"%d\\n\", total);\n" +
+        "    return total;\n" +
+        "}\n";
+
+    static final String CPP =
+        "#include <string>\n" +
+        "\n" +
+        "namespace demo {\n" +
+        "/* A block comment */\n" +
+        "template <typename T>\n" +
+        "class Counter : public Base {\n" +
+        "public:\n" +
+        "    int count(const std::string &text) const {\n" +
+        "        auto total = 0x1F + 017; // a line comment\n" +
+        "        for (char c : text)\n" +
+        "            if (c == '\"') total += items.size();\n" +
+        "        return this->total > 0 ? total : -1;\n" +
+        "    }\n" +
+        "private:\n" +
+        "    std::vector<T> items;\n" +
+        "};\n" +
+        "}\n";
+
+    static final String PYTHON =
+        "import os\n" +
+        "\n" +
+        "class Demo(object):\n" +
+        "    \"\"\"A docstring\n" +
+        "    over two lines.\"\"\"\n" +
+        "\n" +
+        "    @staticmethod\n" +
+        "    def count(text):\n" +
+        "        # a line comment\n" +
+        "        total = 0x1F + 1.5e3\n" +
+        "        for c in text:\n" +
+        "            if c == '\"' or c == \"'\":\n" +
+        "                total += len(os.sep)\n" +
+        "        return total if total > 0 else None\n";
+
+    static final String[] TEXTS = { JAVA, C, CPP, PYTHON };
+    static final LexerSpec[] SPECS = { JavaLexer.SPEC, CLexer.SPEC, CppLexer.SPEC, PythonLexer.SPEC };
+
+    //Pieces of text that open or close comments, strings and the like
+    private static final String[] SNIPPETS = { "/*", "*/", "/**", "@", "\"", "'", "\"\"\"", "#", "//",
+        "\n", " ", "   ", "\n    ", "\t", "foo", "x", "(", ".", "->", "::", ":", "1.5", "0x" };
+
+    private Samples() {
+    }
+
+    /**
+     * An edit replacing [position, removalEnd) of a text with inserted.
+     */
+    static final class Edit {
+        final int position;
+        final int removalEnd;
+        final String inserted;
+
+        Edit(int position, int removalEnd, String inserted) {
+            this.position = position;
+            this.removalEnd = removalEnd;
+            this.inserted = inserted;
+        }
+
+        static Edit random(Random random, String text) {
+            int position = random.nextInt(text.length() + 1);
+            int removed = random.nextInt(4) == 0 ? Math.min(random.nextInt(20), text.length() - position) : 0;
+            String inserted = random.nextInt(5) == 0 ? "" : SNIPPETS[random.nextInt(SNIPPETS.length)];
+            if (removed == 0 && inserted.isEmpty())
+                inserted = "z";
+            return new Edit(position, position + removed, inserted);
+        }
+
+        String applyTo(String text) {
+            return text.substring(0, position) + inserted + text.substring(removalEnd);
+        }
+
+        void addTo(Damage damage) {
+            damage.add(position, removalEnd, position + inserted.length());
+        }
+    }
+}
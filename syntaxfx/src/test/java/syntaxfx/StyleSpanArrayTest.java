@@ -0,0 +1,76 @@
+package syntaxfx;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.fxmisc.richtext.model.StyleSpans;
+import org.fxmisc.richtext.model.StyleSpansBuilder;
+import org.fxmisc.richtext.model.TwoDimensional.Bias;
+import org.junit.Test;
+
+public class StyleSpanArrayTest {
+
+    private static final String[] STYLES = { "a", "b", "c", "d" };
+
+    @Test
+    public void matchesStyleSpansBuilder() {
+        Random random = new Random(5);
+        for (int run = 0; run < 1000; ++run) {
+            StyleSpanArray.Builder<String> array = new StyleSpanArray.Builder<String>(STYLES, random.nextInt(4));
+            StyleSpansBuilder<String> builder = new StyleSpansBuilder<String>();
+            for (int count = 1 + random.nextInt(20); count > 0; --count) {
+                int id = random.nextInt(STYLES.length);
+                int length = random.nextInt(3) == 0 ? 0 : random.nextInt(10);
+                array.add(id, length);
+                builder.add(STYLES[id], length);
+            }
+            assertSameSpans(builder.create(), array.create());
+        }
+    }
+
+    @Test
+    public void computeHighlightingMatchesStyleSpansBuilder() {
+        StyleMapper<String> styles = StyleMapper.of("plain", type -> "token" + type);
+        Random random = new Random(9);
+        for (int i = 0; i < Samples.TEXTS.length; ++i) {
+            String text = Samples.TEXTS[i];
+            TokenList tokens = new TokenList();
+            Damage damage = new Damage();
+            damage.add(0, 0, text.length());
+            tokens.relex(Samples.SPECS[i].createLexer(), text, damage, Integer.MAX_VALUE, TokenList.NO_DEADLINE,
+                    false, null);
+            for (int run = 0; run < 100; ++run) {
+                int start = random.nextInt(text.length());
+                int end = start + 1 + random.nextInt(text.length() - start);
+                //A span for each token and each gap between them, as highlighting used to add them
+                StyleSpansBuilder<String> builder = new StyleSpansBuilder<String>();
+                int position = start;
+                for (int token = 0; token < tokens.size && tokens.starts[token] < end; ++token) {
+                    if (tokens.ends[token] <= start)
+                        continue;
+                    int tokenStart = Math.max(tokens.starts[token], start);
+                    builder.add(styles.getPlainStyle(), tokenStart - position);
+                    position = Math.min(tokens.ends[token], end);
+                    builder.add(styles.getStyle(tokens.types[token]), position - tokenStart);
+                }
+                builder.add(styles.getPlainStyle(), end - position);
+                assertSameSpans(builder.create(),
+                        Highlighter.computeHighlighting(tokens, text, start, end, false, styles));
+            }
+        }
+    }
+
+    private static void assertSameSpans(StyleSpans<String> expected, StyleSpans<String> actual) {
+        assertEquals(expected, actual);
+        assertEquals(actual, expected);
+        assertEquals(expected.length(), actual.length());
+        assertEquals(expected.getSpanCount(), actual.getSpanCount());
+        for (int offset = 0; offset <= expected.length(); ++offset) {
+            assertEquals(expected.offsetToPosition(offset, Bias.Forward).getMajor(),
+                    actual.offsetToPosition(offset, Bias.Forward).getMajor());
+            assertEquals(expected.offsetToPosition(offset, Bias.Backward).getMinor(),
+                    actual.offsetToPosition(offset, Bias.Backward).getMinor());
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package syntaxfx;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import syntaxfx.lexers.JavaLexer;
+
+public class TokenListTest {
+
+    private static final int EDITS = 300;
+
+    @Test
+    public void relexMatchesLexingFromScratch() {
+        checkRandomEdits(Integer.MAX_VALUE, false);
+    }
+
+    @Test
+    public void relexInChunksMatchesLexingFromScratch() {
+        checkRandomEdits(40, false);
+    }
+
+    @Test
+    public void relexPastItsDeadlineMatchesLexingFromScratch() {
+        //A deadline that has already passed stops lexing as soon as it's allowed to
+        checkRandomEdits(Integer.MAX_VALUE, true);
+    }
+
+    @Test
+    public void checkpointsResumeLexingWhereTheyWereTaken() {
+        for (int i = 0; i < Samples.TEXTS.length; ++i) {
+            String text = Samples.TEXTS[i];
+            TokenList tokens = lex(Samples.SPECS[i].createLexer(), text);
+            Lexer lexer = Samples.SPECS[i].createLexer();
+            for (int line = 1; line < tokens.lines; ++line) {
+                if (tokens.checkpointStates[line] == null)
+                    continue;
+                lexer.setString(text, tokens.checkpointOffsets[line], tokens.checkpointStates[line]);
+                int index = tokens.checkpointTokens[line];
+                for (Token token = lexer.getNextToken(); token != null; token = lexer.getNextToken())
+                    assertToken(tokens, index++, token);
+                assertEquals(tokens.size, index);
+            }
+        }
+    }
+
+    @Test
+    public void relexWithLexerThatCantResume() {
+        Random random = new Random(3);
+        String text = Samples.JAVA;
+        Lexer lexer = new WholeDocumentLexer();
+        TokenList tokens = lex(lexer, text);
+        for (int i = 0; i < 50; ++i) {
+            Samples.Edit edit = Samples.Edit.random(random, text);
+            text = edit.applyTo(text);
+            Damage damage = new Damage();
+            edit.addTo(damage);
+            while (!damage.isEmpty())
+                tokens.relex(lexer, text, damage, 40, TokenList.NO_DEADLINE, false, null);
+            assertSameTokens(new JavaLexer(), text, tokens);
+        }
+    }
+
+    @Test
+    public void lexRangeWithLexerThatCantResume() {
+        String text = Samples.JAVA;
+        TokenList all = lex(new JavaLexer(), text);
+        int from = text.indexOf("public class");
+        int to = text.indexOf("    public int");
+        TokenList range = new TokenList();
+        range.lexRange(new WholeDocumentLexer(), text, from, to);
+        int first = all.firstEndingAfter(from);
+        assertTrue(range.size > 0);
+        for (int i = 0; i < range.size; ++i) {
+            assertEquals(all.types[first + i], range.types[i]);
+            assertEquals(all.starts[first + i], range.starts[i]);
+            assertEquals(all.ends[first + i], range.ends[i]);
+        }
+        assertEquals(to, range.ends[range.size - 1]);
+    }
+
+    @Test
+    public void lexingARegionDoesntShiftTokensLexedLater() {
+        String text = Samples.JAVA;
+        Lexer lexer = new WholeDocumentLexer();
+        new TokenList().lexRange(lexer, text, text.indexOf("public class"), text.length());
+        TokenList all = lex(new JavaLexer(), text);
+        int[] token = new int[3];
+        lexer.setString(text);
+        for (int i = 0; i < all.size; ++i) {
+            assertTrue(lexer.nextToken((type, start, end) -> {
+                token[0] = type;
+                token[1] = start;
+                token[2] = end;
+            }));
+            assertEquals(all.types[i], token[0]);
+            assertEquals(all.starts[i], token[1]);
+            assertEquals(all.ends[i], token[2]);
+        }
+    }
+
+    private static void checkRandomEdits(int maxLength, boolean deadline) {
+        Random random = new Random(42);
+        for (int i = 0; i < Samples.TEXTS.length; ++i) {
+            String text = Samples.TEXTS[i];
+            Lexer lexer = Samples.SPECS[i].createLexer();
+            TokenList tokens = lex(lexer, text);
+            for (int edit = 0; edit < EDITS; ++edit) {
+                Damage damage = new Damage();
+                for (int count = 1 + random.nextInt(3); count > 0; --count) {
+                    Samples.Edit change = Samples.Edit.random(random, text);
+                    text = change.applyTo(text);
+                    change.addTo(damage);
+                }
+                //Lexing can stop early, leaving the rest of the damage for the next call
+                int calls = 0;
+                while (!damage.isEmpty()) {
+                    tokens.relex(lexer, text, damage, maxLength, deadline ? System.nanoTime() : TokenList.NO_DEADLINE,
+                            false, null);
+                    assertTrue("relex() isn't getting anywhere", ++calls <= text.length() + 1);
+                }
+                assertSameTokens(Samples.SPECS[i].createLexer(), text, tokens);
+            }
+        }
+    }
+
+    private static TokenList lex(Lexer lexer, String text) {
+        TokenList tokens = new TokenList();
+        Damage damage = new Damage();
+        damage.add(0, 0, text.length());
+        tokens.relex(lexer, text, damage, Integer.MAX_VALUE, TokenList.NO_DEADLINE, false, null);
+        assertTrue(damage.isEmpty());
+        return tokens;
+    }
+
+    private static void assertSameTokens(Lexer lexer, String text, TokenList tokens) {
+        lexer.setString(text);
+        int index = 0;
+        for (Token token = lexer.getNextToken(); token != null; token = lexer.getNextToken())
+            assertToken(tokens, index++, token);
+        assertEquals(index, tokens.size);
+        assertEquals(text.split("\n", -1).length, tokens.lines);
+    }
+
+    private static void assertToken(TokenList tokens, int index, Token token) {
+        assertTrue("missing token " + index, index < tokens.size);
+        assertEquals("type of token " + index, token.getTokenType(), tokens.types[index]);
+        assertEquals("start of token " + index, token.getStart(), tokens.starts[index]);
+        assertEquals("end of token " + index, token.getEnd(), tokens.ends[index]);
+    }
+
+    //A lexer that only implements the methods every lexer has to
+    private static class WholeDocumentLexer extends Lexer {
+        private final JavaLexer lexer = new JavaLexer();
+
+        @Override
+        public void setString(String str) {
+            lexer.setString(str);
+        }
+
+        @Override
+        public Token getNextToken() {
+            return lexer.getNextToken();
+        }
+    }
+}